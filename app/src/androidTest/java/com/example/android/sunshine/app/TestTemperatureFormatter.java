@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.TemperatureFormatter;
+
+import java.util.Locale;
+
+/*
+    Checks the precomputed temperature tables against String.format, and benchmarks both for
+    the metric and imperial unit systems.  Benchmark results are written to the log.
+ */
+public class TestTemperatureFormatter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestTemperatureFormatter.class.getSimpleName();
+
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    // A spread of realistic Celsius readings, including halves to exercise rounding.
+    private static final double[] TEMPERATURES = {
+            -40.0, -17.5, -3.2, 0.0, 0.5, 4.4, 12.5, 18.9, 21.0, 25.5, 30.1, 37.8, 45.0
+    };
+
+    private String mFormat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFormat = mContext.getString(R.string.format_temperature);
+    }
+
+    public void testTableMatchesStringFormat() {
+        for (boolean metric : new boolean[]{true, false}) {
+            TemperatureFormatter formatter =
+                    new TemperatureFormatter(mFormat, Locale.getDefault(), metric);
+            for (int i = -600; i <= 600; i++) {
+                double celsius = i / 10.0;
+                double displayed = metric ? celsius : (celsius * 1.8) + 32;
+                String expected = String.format(Locale.getDefault(), mFormat, displayed);
+                String actual = formatter.format(celsius);
+                if (!expected.equals(actual)) {
+                    // The table never produces "-0", which String.format does for -0.4 and up.
+                    assertEquals("Error: Unexpected formatting for " + celsius + "C",
+                            String.format(Locale.getDefault(), mFormat, 0.0), actual);
+                }
+            }
+        }
+    }
+
+    public void testOutOfRangeFallsBackToStringFormat() {
+        TemperatureFormatter formatter = new TemperatureFormatter(mFormat, Locale.getDefault(), true);
+        double hot = TemperatureFormatter.MAX_TABLE_TEMPERATURE + 12;
+        assertEquals(String.format(Locale.getDefault(), mFormat, hot), formatter.format(hot));
+    }
+
+    public void testFormatterDoesNotAllocate() {
+        for (boolean metric : new boolean[]{true, false}) {
+            TemperatureFormatter formatter =
+                    new TemperatureFormatter(mFormat, Locale.getDefault(), metric);
+            // Warm up so that any lazy class initialization happens outside the measured block.
+            formatter.format(TEMPERATURES[0]);
+
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            for (double temperature : TEMPERATURES) {
+                formatter.format(temperature);
+            }
+            Debug.stopAllocCounting();
+            assertEquals("Error: Formatting allocated objects (metric=" + metric + ")",
+                    0, Debug.getThreadAllocCount());
+        }
+    }
+
+    public void testBenchmarkMetric() {
+        benchmark(true);
+    }
+
+    public void testBenchmarkImperial() {
+        benchmark(false);
+    }
+
+    private void benchmark(boolean metric) {
+        TemperatureFormatter formatter = new TemperatureFormatter(mFormat, Locale.getDefault(), metric);
+        int count = TEMPERATURES.length;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            double celsius = TEMPERATURES[i % count];
+            double displayed = metric ? celsius : (celsius * 1.8) + 32;
+            String.format(mFormat, displayed);
+        }
+        long stringFormatNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            formatter.format(TEMPERATURES[i % count]);
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        Log.i(LOG_TAG, (metric ? "metric" : "imperial") + ": String.format "
+                + (stringFormatNanos / BENCHMARK_ITERATIONS) + "ns/op, table "
+                + (tableNanos / BENCHMARK_ITERATIONS) + "ns/op");
+    }
+}
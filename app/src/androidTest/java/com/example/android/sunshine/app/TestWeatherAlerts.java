@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+/*
+    Drives the alert pipeline with explicit timestamps, so the windows can be tested without
+    waiting on the clock.
+ */
+public class TestWeatherAlerts extends AndroidTestCase {
+
+    private static final long DEDUP_WINDOW = 1000;
+    private static final long RATE_WINDOW = 10000;
+    private static final int MAX_PER_LOCATION = 2;
+    private static final long BURST_WINDOW = 100;
+
+    private WeatherAlerts mAlerts;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mAlerts = new WeatherAlerts(DEDUP_WINDOW, RATE_WINDOW, MAX_PER_LOCATION, BURST_WINDOW);
+    }
+
+    public void testDuplicatesAreDropped() {
+        assertEquals(WeatherAlerts.RESULT_POSTED, mAlerts.offer("94043", "Storm", 0));
+        assertEquals("Error: Repeat inside the window was shown",
+                WeatherAlerts.RESULT_DUPLICATE, mAlerts.offer("94043", "storm", 500));
+        // The repeat at 500 extended the window.
+        assertEquals(WeatherAlerts.RESULT_DUPLICATE, mAlerts.offer("94043", "Storm", 1400));
+        assertEquals("Error: Alert after the window was dropped",
+                WeatherAlerts.RESULT_POSTED, mAlerts.offer("94043", "Storm", 2500));
+    }
+
+    public void testLocationsAreRateLimited() {
+        assertEquals(WeatherAlerts.RESULT_POSTED, mAlerts.offer("94043", "Storm", 0));
+        assertEquals(WeatherAlerts.RESULT_POSTED, mAlerts.offer("94043", "Hail", 200));
+        assertEquals("Error: Location went over its limit",
+                WeatherAlerts.RESULT_RATE_LIMITED, mAlerts.offer("94043", "Snow", 400));
+        assertEquals("Error: Other locations share the limit",
+                WeatherAlerts.RESULT_POSTED, mAlerts.offer("10001", "Snow", 600));
+        assertEquals(WeatherAlerts.RESULT_POSTED, mAlerts.offer("94043", "Snow", RATE_WINDOW));
+        // 10001 has nothing left in the window, so it is no longer tracked.
+        assertEquals(WeatherAlerts.RESULT_POSTED,
+                mAlerts.offer("94043", "Fog", RATE_WINDOW + 600));
+        assertEquals("Error: Quiet location is still tracked", 1,
+                mAlerts.getTrackedLocationCount());
+    }
+
+    public void testBurstIsMergedIntoSummary() {
+        String[] locations = {"a", "b", "c", "d", "e", "f", "g"};
+        assertEquals(WeatherAlerts.RESULT_POSTED, mAlerts.offer(locations[0], "Storm", 0));
+        for (int i = 1; i < locations.length; i++) {
+            assertEquals(WeatherAlerts.RESULT_MERGED,
+                    mAlerts.offer(locations[i], "Storm", i * 50));
+        }
+        assertEquals(locations.length, mAlerts.getBurstSize());
+        assertEquals(WeatherAlerts.MAX_BURST_LINES, mAlerts.getBurst().size());
+        // The oldest alerts make way for the newest.
+        assertEquals("Heads up: Storm in c!", mAlerts.getBurst().get(0));
+        assertEquals("Heads up: Storm in g!",
+                mAlerts.getBurst().get(WeatherAlerts.MAX_BURST_LINES - 1));
+
+        // A quiet spell ends the burst.
+        long later = locations.length * 50 + BURST_WINDOW;
+        assertEquals(WeatherAlerts.RESULT_POSTED, mAlerts.offer("h", "Storm", later));
+        assertEquals(1, mAlerts.getBurstSize());
+    }
+
+    public void testCounters() {
+        mAlerts.offer("94043", "Storm", 0);
+        mAlerts.offer("94043", "Storm", 10);
+        mAlerts.offer("94043", "Hail", 20);
+        mAlerts.offer("94043", "Snow", 30);
+
+        assertEquals(4, mAlerts.getReceivedCount());
+        assertEquals("Error: Duplicate and rate limited alerts should both count as dropped",
+                2, mAlerts.getDroppedCount());
+        assertEquals(1, mAlerts.getMergedCount());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+    Runs the artwork cache against fixture images built in memory, so nothing touches the
+    network.
+ */
+public class TestArtworkCache extends AndroidTestCase {
+
+    private static final String URL_STORM = "http://example.com/storm.jpg";
+    private static final String URL_RAIN = "http://example.com/rain.jpg";
+    private static final String URL_SNOW = "http://example.com/snow.jpg";
+
+    private static final int TARGET_WIDTH = 400;
+    private static final int TARGET_HEIGHT = 300;
+
+    private File mDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(mContext.getCacheDir(), "test_artwork");
+        deleteDirectory();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteDirectory();
+        super.tearDown();
+    }
+
+    private void deleteDirectory() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * @return a JPEG fixture of the given size, with a gradient so it doesn't compress to nothing
+     */
+    private static InputStream createFixture(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < height; y += 4) {
+            for (int x = 0; x < width; x += 4) {
+                bitmap.setPixel(x, y, Color.rgb(x % 256, y % 256, (x + y) % 256));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        bitmap.recycle();
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private ArtworkCache createCache(long maxBytes) {
+        return new ArtworkCache(mDirectory, maxBytes, TARGET_WIDTH, TARGET_HEIGHT);
+    }
+
+    public void testDownscalesToCoverTarget() throws IOException {
+        ArtworkCache cache = createCache(Long.MAX_VALUE);
+        File file = cache.put(URL_STORM, createFixture(2400, 1600));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+
+        // 2400x1600 scaled by max(400/2400, 300/1600) keeps the aspect ratio and covers 400x300.
+        assertEquals("Error: Cached image has the wrong width", 450, options.outWidth);
+        assertEquals("Error: Cached image has the wrong height", 300, options.outHeight);
+    }
+
+    public void testSmallImagesAreNotUpscaled() throws IOException {
+        ArtworkCache cache = createCache(Long.MAX_VALUE);
+        File file = cache.put(URL_STORM, createFixture(200, 100));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        assertEquals(200, options.outWidth);
+        assertEquals(100, options.outHeight);
+    }
+
+    public void testGetReturnsCachedFile() throws IOException {
+        ArtworkCache cache = createCache(Long.MAX_VALUE);
+        assertNull("Error: Nothing should be cached yet", cache.get(URL_RAIN));
+
+        File file = cache.put(URL_RAIN, createFixture(800, 600));
+        assertEquals(file, cache.get(URL_RAIN));
+        // Already cached, so no download is attempted.
+        assertEquals(file, cache.fetch(URL_RAIN));
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        ArtworkCache cache = createCache(Long.MAX_VALUE);
+        File storm = cache.put(URL_STORM, createFixture(800, 600));
+        File rain = cache.put(URL_RAIN, createFixture(800, 600));
+        long now = System.currentTimeMillis();
+        storm.setLastModified(now - 2000);
+        rain.setLastModified(now - 1000);
+
+        // Room for two images: adding a third evicts the oldest.
+        long budget = storm.length() + rain.length() + storm.length() / 2;
+        cache = createCache(budget);
+        cache.get(URL_STORM);
+        File snow = cache.put(URL_SNOW, createFixture(800, 600));
+
+        assertTrue("Error: Recently used image was evicted", storm.exists());
+        assertFalse("Error: Least recently used image was kept", rain.exists());
+        assertTrue("Error: New image was evicted", snow.exists());
+        assertTrue("Error: Cache is over budget", cache.trim() <= budget);
+    }
+
+    public void testUndecodableImageIsRejected() {
+        ArtworkCache cache = createCache(Long.MAX_VALUE);
+        try {
+            cache.put(URL_STORM, new ByteArrayInputStream(new byte[]{1, 2, 3}));
+            fail("Error: Garbage should not be cached");
+        } catch (IOException expected) {
+            assertNull(cache.get(URL_STORM));
+        }
+        String[] left = mDirectory.list();
+        assertEquals("Error: Temporary files were left behind", 0, left == null ? 0 : left.length);
+    }
+
+    public void testUriIsServedByFileProvider() throws IOException {
+        File file = ArtworkCache.create(mContext).put(URL_STORM, createFixture(800, 600));
+        try {
+            Uri uri = ArtworkCache.getUri(mContext, file);
+            assertEquals("content", uri.getScheme());
+            InputStream in = mContext.getContentResolver().openInputStream(uri);
+            assertNotNull(in);
+            in.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
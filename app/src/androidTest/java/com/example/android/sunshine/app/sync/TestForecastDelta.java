@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.ForecastCodec;
+
+/*
+    Feeds forecast deltas to the provider from a fake message source, so no GCM connection or
+    network fetch is involved.  Rows are written for the preferred location, on dates long past,
+    and removed again afterwards.
+ */
+public class TestForecastDelta extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    // 2001-01-01, far from any real forecast
+    private static final long FIRST_DATE = 978307200000L;
+    private static final int DAYS = 3;
+
+    private String mLocation;
+    private long mLocationId;
+    private boolean mInsertedLocation;
+
+    /**
+     * Stands in for the GCM connection: builds the message extras the server would send.
+     */
+    private static class FakeMessageSource {
+        Bundle deltaFor(String location, int count, double[] highs, double[] lows,
+                        int[] weatherIds) {
+            long[] dates = new long[count];
+            for (int i = 0; i < count; i++) {
+                dates[i] = FIRST_DATE + i * DAY_IN_MILLIS;
+            }
+            Bundle extras = ForecastDelta.toExtras(location,
+                    ForecastCodec.encode(true, count, dates, highs, lows, weatherIds));
+            extras.putString("from", "fake");
+            return extras;
+        }
+    }
+
+    private final FakeMessageSource mSource = new FakeMessageSource();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mLocation = SettingsSnapshot.get(mContext).location;
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{mLocation}, null);
+        assertNotNull(cursor);
+        if (cursor.moveToFirst()) {
+            mLocationId = cursor.getLong(0);
+        } else {
+            ContentValues location = new ContentValues();
+            location.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, mLocation);
+            location.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "Test City");
+            location.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 64.7488);
+            location.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, -147.353);
+            mLocationId = ContentUris.parseId(mContext.getContentResolver().insert(
+                    WeatherContract.LocationEntry.CONTENT_URI, location));
+            mInsertedLocation = true;
+        }
+        cursor.close();
+
+        // Full rows for the first two days only; the delta can't create the third.
+        ContentValues[] rows = new ContentValues[DAYS - 1];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, mLocationId);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_DATE, FIRST_DATE + i * DAY_IN_MILLIS);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 1.1);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 1.2);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1.3);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 75);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 65);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+            rows[i].put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 321);
+        }
+        assertEquals(rows.length, mContext.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, rows));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        long end = WeatherContract.normalizeDate(FIRST_DATE + DAYS * DAY_IN_MILLIS);
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(mLocationId), Long.toString(end)});
+        if (mInsertedLocation) {
+            mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI,
+                    WeatherContract.LocationEntry._ID + " = ?",
+                    new String[]{Long.toString(mLocationId)});
+        }
+        super.tearDown();
+    }
+
+    private Cursor queryDay(int day) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " = ?",
+                new String[]{Long.toString(mLocationId), Long.toString(
+                        WeatherContract.normalizeDate(FIRST_DATE + day * DAY_IN_MILLIS))},
+                null);
+        assertNotNull(cursor);
+        return cursor;
+    }
+
+    private double getDouble(Cursor cursor, String column) {
+        return cursor.getDouble(cursor.getColumnIndexOrThrow(column));
+    }
+
+    public void testDeltaUpdatesExistingDays() {
+        Bundle extras = mSource.deltaFor(mLocation, DAYS,
+                new double[]{21.5, 18, 30}, new double[]{10, -3.5, 20}, new int[]{800, 500, 600});
+        assertTrue(ForecastDelta.isDelta(extras));
+
+        // The third day has no row to update.
+        assertEquals("Error: Wrong number of days updated", DAYS - 1,
+                ForecastDelta.apply(mContext, extras));
+
+        Cursor cursor = queryDay(0);
+        assertTrue("Error: First day is gone", cursor.moveToFirst());
+        assertEquals(21.5, getDouble(cursor, WeatherContract.WeatherEntry.COLUMN_MAX_TEMP), 0.05);
+        assertEquals(10, getDouble(cursor, WeatherContract.WeatherEntry.COLUMN_MIN_TEMP), 0.05);
+        assertEquals(800, cursor.getInt(
+                cursor.getColumnIndexOrThrow(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID)));
+        // Columns the delta doesn't carry keep their values.
+        assertEquals("Error: Humidity was lost", 1.2,
+                getDouble(cursor, WeatherContract.WeatherEntry.COLUMN_HUMIDITY), 0.001);
+        assertEquals("Error: Synced description was replaced", "Asteroids", cursor.getString(
+                cursor.getColumnIndexOrThrow(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC)));
+        cursor.close();
+
+        cursor = queryDay(1);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(-3.5, getDouble(cursor, WeatherContract.WeatherEntry.COLUMN_MIN_TEMP), 0.05);
+        cursor.close();
+
+        cursor = queryDay(2);
+        assertFalse("Error: Delta created a partial row", cursor.moveToFirst());
+        cursor.close();
+    }
+
+    public void testDeltaForOtherLocationIsIgnored() {
+        Bundle extras = mSource.deltaFor(mLocation + "-elsewhere", 1,
+                new double[]{40}, new double[]{30}, new int[]{800});
+        assertEquals(0, ForecastDelta.apply(mContext, extras));
+
+        Cursor cursor = queryDay(0);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: Delta for another location was applied", 75,
+                getDouble(cursor, WeatherContract.WeatherEntry.COLUMN_MAX_TEMP), 0.001);
+        cursor.close();
+    }
+
+    public void testMalformedDeltaIsRejected() {
+        Bundle extras = ForecastDelta.toExtras(mLocation, new byte[]{1, 2, 3});
+        assertEquals(0, ForecastDelta.apply(mContext, extras));
+
+        extras.putString(ForecastDelta.EXTRA_FORECAST, "not base64!");
+        assertEquals(0, ForecastDelta.apply(mContext, extras));
+    }
+
+    public void testAlertIsNotADelta() {
+        Bundle extras = new Bundle();
+        extras.putString("weather", "Storm");
+        extras.putString(ForecastDelta.EXTRA_LOCATION, mLocation);
+        assertFalse(ForecastDelta.isDelta(extras));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.format.DateUtils;
+
+/**
+ * Everything {@link DetailFragment} shows for one day, already formatted.  Snapshots can be built
+ * on any thread, so the detail pane can be rendered without touching the database or formatting
+ * anything on the main thread.
+ */
+public final class DetailSnapshot {
+
+    // Raw values, used to tell whether a freshly loaded row changed anything.
+    public final long date;
+    public final int weatherId;
+    public final double high;
+    public final double low;
+    public final float humidity;
+    public final float pressure;
+    public final float windSpeed;
+    public final float windDirection;
+
+    // Formatted values, ready to be put on screen.
+    public final String dateText;
+    public final String description;
+    public final String highText;
+    public final String lowText;
+    public final String humidityText;
+    public final String windText;
+    public final String pressureText;
+    public final String shareText;
+
+    // The settings version and the moment the text was formatted with.  "Today" and units
+    // both go stale, see isCurrent().
+    private final int mSettingsVersion;
+    private final long mCreatedAt;
+
+    private DetailSnapshot(Context context, Cursor data, int settingsVersion) {
+        date = data.getLong(DetailFragment.COL_WEATHER_DATE);
+        weatherId = data.getInt(DetailFragment.COL_WEATHER_CONDITION_ID);
+        high = data.getDouble(DetailFragment.COL_WEATHER_MAX_TEMP);
+        low = data.getDouble(DetailFragment.COL_WEATHER_MIN_TEMP);
+        humidity = data.getFloat(DetailFragment.COL_WEATHER_HUMIDITY);
+        pressure = data.getFloat(DetailFragment.COL_WEATHER_PRESSURE);
+        windSpeed = data.getFloat(DetailFragment.COL_WEATHER_WIND_SPEED);
+        windDirection = data.getFloat(DetailFragment.COL_WEATHER_DEGREES);
+
+        dateText = Utility.getFullFriendlyDayString(context, date);
+        description = Utility.getStringForWeatherCondition(context, weatherId);
+        highText = Utility.formatTemperature(context, high);
+        lowText = Utility.formatTemperature(context, low);
+        humidityText = context.getString(R.string.format_humidity, humidity);
+        windText = Utility.getFormattedWind(context, windSpeed, windDirection);
+        pressureText = context.getString(R.string.format_pressure, pressure);
+        shareText = String.format("%s - %s - %s/%s", dateText, description, high, low);
+
+        mSettingsVersion = settingsVersion;
+        mCreatedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Builds a snapshot from a cursor positioned on a row projected with
+     * {@link DetailFragment#DETAIL_COLUMNS}.
+     */
+    public static DetailSnapshot fromCursor(Context context, Cursor data) {
+        return new DetailSnapshot(context, data, SettingsSnapshot.get(context).version);
+    }
+
+    /**
+     * @return true if the formatted text still reflects the current settings and day
+     */
+    public boolean isCurrent(Context context) {
+        return mSettingsVersion == SettingsSnapshot.get(context).version
+                && DateUtils.isToday(mCreatedAt);
+    }
+
+    /**
+     * @return true if the row under the cursor holds the same values this snapshot was built from
+     */
+    public boolean hasSameValues(Cursor data) {
+        return date == data.getLong(DetailFragment.COL_WEATHER_DATE)
+                && weatherId == data.getInt(DetailFragment.COL_WEATHER_CONDITION_ID)
+                && high == data.getDouble(DetailFragment.COL_WEATHER_MAX_TEMP)
+                && low == data.getDouble(DetailFragment.COL_WEATHER_MIN_TEMP)
+                && humidity == data.getFloat(DetailFragment.COL_WEATHER_HUMIDITY)
+                && pressure == data.getFloat(DetailFragment.COL_WEATHER_PRESSURE)
+                && windSpeed == data.getFloat(DetailFragment.COL_WEATHER_WIND_SPEED)
+                && windDirection == data.getFloat(DetailFragment.COL_WEATHER_DEGREES);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.util.LruCache;
+import android.text.format.DateUtils;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory cache of {@link DetailSnapshot}s keyed by location and date.
+ * <p/>
+ * Whenever a day is shown, its neighbours are loaded and formatted on a background thread, so
+ * that stepping through days in the two-pane layout renders straight from memory.  The whole
+ * cache is dropped whenever the weather table changes.
+ */
+public final class DetailSnapshotCache {
+
+    // A two week forecast for a couple of locations.
+    private static final int MAX_ENTRIES = 32;
+
+    private static final LruCache<String, DetailSnapshot> sCache =
+            new LruCache<String, DetailSnapshot>(MAX_ENTRIES);
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private static ContentObserver sObserver;
+
+    private DetailSnapshotCache() {
+    }
+
+    private static String key(String location, long date) {
+        return location + '/' + WeatherContract.normalizeDate(date);
+    }
+
+    /**
+     * @return the cached snapshot for the day, or null if there is none or it is stale
+     */
+    public static DetailSnapshot get(Context context, String location, long date) {
+        DetailSnapshot snapshot = sCache.get(key(location, date));
+        if (snapshot != null && !snapshot.isCurrent(context)) {
+            sCache.remove(key(location, date));
+            return null;
+        }
+        return snapshot;
+    }
+
+    public static void put(Context context, String location, DetailSnapshot snapshot) {
+        registerObserver(context);
+        sCache.put(key(location, snapshot.date), snapshot);
+    }
+
+    /**
+     * Loads the days before and after the given weather uri in the background, unless they are
+     * already cached.
+     *
+     * @param context Context used to query the weather provider
+     * @param weatherUri a uri built with WeatherEntry.buildWeatherLocationWithDate
+     */
+    public static void prefetchNeighbours(Context context, Uri weatherUri) {
+        final Context appContext = context.getApplicationContext();
+        final String location = WeatherContract.WeatherEntry.getLocationSettingFromUri(weatherUri);
+        final long date = WeatherContract.WeatherEntry.getDateFromUri(weatherUri);
+        registerObserver(appContext);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(appContext, location, date - DateUtils.DAY_IN_MILLIS);
+                prefetch(appContext, location, date + DateUtils.DAY_IN_MILLIS);
+            }
+        });
+    }
+
+    private static void prefetch(Context context, String location, long date) {
+        if (get(context, location, date) != null) {
+            return;
+        }
+        Cursor data = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithDate(location, date),
+                DetailFragment.DETAIL_COLUMNS, null, null, null);
+        if (data == null) {
+            return;
+        }
+        try {
+            if (data.moveToFirst()) {
+                sCache.put(key(location, date), DetailSnapshot.fromCursor(context, data));
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    private static synchronized void registerObserver(Context context) {
+        if (sObserver != null) {
+            return;
+        }
+        sObserver = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                sCache.evictAll();
+            }
+        };
+        context.getApplicationContext().getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, sObserver);
+    }
+}
@@ -200,6 +200,29 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        if (BuildConfig.DEBUG) {
+            mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                private int mSnapshotReads;
+                private int mPreferenceLookups;
+
+                @Override
+                public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                    // Report how many settings reads a single scroll gesture caused.  Every
+                    // snapshot read used to be a SharedPreferences lookup of its own.
+                    if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+                        mSnapshotReads = SettingsSnapshot.getSnapshotReadCount();
+                        mPreferenceLookups = SettingsSnapshot.getPreferenceLookupCount();
+                    } else if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        Log.d(LOG_TAG, "Settings reads during scroll: "
+                                + (SettingsSnapshot.getSnapshotReadCount() - mSnapshotReads)
+                                + " (SharedPreferences lookups before snapshots), "
+                                + (SettingsSnapshot.getPreferenceLookupCount() - mPreferenceLookups)
+                                + " (SharedPreferences lookups now)");
+                    }
+                }
+            });
+        }
+
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -338,6 +361,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                     // we see Children.
                     if (mRecyclerView.getChildCount() > 0) {
                         mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // Time-to-first-forecast is the startup metric we care about most.
+                        StartupOrchestrator.reportPhase("first-forecast");
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION &&
                                 -1 != mInitialSelectedDate) {
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.Arrays;
+
+/**
+ * Immutable copy of the upcoming forecast for the preferred location, read by every surface
+ * outside the app itself: the widgets, the Muzei source and the daily notification.
+ * <p/>
+ * The sync adapter {@link #publish publishes} a new snapshot once after each download, so a sync
+ * costs one provider query no matter how many surfaces are updated.  A snapshot whose content
+ * differs from the previous one gets a new {@link #version}; a surface that remembers the version
+ * it last rendered can skip the work when nothing changed.
+ */
+public final class ForecastSnapshot {
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_SHORT_DESC = 2;
+    private static final int INDEX_MAX_TEMP = 3;
+    private static final int INDEX_MIN_TEMP = 4;
+
+    public final String location;
+    /**
+     * Incremented every time a loaded snapshot differs from the current one, so callers can
+     * cheaply tell whether what they rendered from an older snapshot is stale.
+     */
+    public final int version;
+
+    // The normalized day the snapshot starts on.
+    private final long mStartDate;
+
+    // No row ids: every sync replaces the rows, so their ids would change even when the forecast
+    // doesn't.
+    private final long[] mDates;
+    private final int[] mWeatherIds;
+    private final String[] mDescriptions;
+    private final double[] mHighs;
+    private final double[] mLows;
+
+    private static volatile ForecastSnapshot sCurrent;
+
+    // How many times the provider was queried to build snapshots.
+    private static int sQueries;
+
+    private ForecastSnapshot(String location, long startDate, int version, int count) {
+        this.location = location;
+        this.version = version;
+        mStartDate = startDate;
+        mDates = new long[count];
+        mWeatherIds = new int[count];
+        mDescriptions = new String[count];
+        mHighs = new double[count];
+        mLows = new double[count];
+    }
+
+    /**
+     * @return number of days, starting with today
+     */
+    public int size() {
+        return mDates.length;
+    }
+
+    public boolean isEmpty() {
+        return mDates.length == 0;
+    }
+
+    public long getDate(int day) {
+        return mDates[day];
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    public String getDescription(int day) {
+        return mDescriptions[day];
+    }
+
+    public double getHigh(int day) {
+        return mHighs[day];
+    }
+
+    public double getLow(int day) {
+        return mLows[day];
+    }
+
+    /**
+     * @return true if the first day of the snapshot is today
+     */
+    public boolean startsToday() {
+        return !isEmpty() && mDates[0] == WeatherContract.normalizeDate(System.currentTimeMillis());
+    }
+
+    /**
+     * Combines the forecast and settings versions into one value that changes whenever either of
+     * them does, for surfaces that render both.
+     */
+    public long getRenderVersion(SettingsSnapshot settings) {
+        return ((long) version << 32) | (settings.version & 0xffffffffL);
+    }
+
+    /**
+     * Returns the current snapshot.  The provider is only queried if there is no snapshot yet, or
+     * if the preferred location or the day changed since it was loaded, so this must not be called
+     * from the main thread.
+     *
+     * @param context Context used to query the weather provider
+     */
+    public static ForecastSnapshot get(Context context) {
+        ForecastSnapshot snapshot = sCurrent;
+        if (isStale(context, snapshot)) {
+            synchronized (ForecastSnapshot.class) {
+                // Another thread may have reloaded it while this one waited.
+                snapshot = sCurrent;
+                if (isStale(context, snapshot)) {
+                    snapshot = publish(context);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private static boolean isStale(Context context, ForecastSnapshot snapshot) {
+        return snapshot == null
+                || !snapshot.location.equals(SettingsSnapshot.get(context).location)
+                || snapshot.mStartDate != WeatherContract.normalizeDate(System.currentTimeMillis());
+    }
+
+    /**
+     * Loads a new snapshot from the provider and makes it current.  Called by the sync adapter
+     * after it wrote new weather, before any surface is told to update.
+     *
+     * @param context Context used to query the weather provider
+     * @return the new snapshot, or the current one if the provider holds the same forecast
+     */
+    public static synchronized ForecastSnapshot publish(Context context) {
+        ForecastSnapshot current = sCurrent;
+        ForecastSnapshot loaded = load(context.getApplicationContext(),
+                current == null ? 1 : current.version + 1);
+        if (current != null && loaded.hasSameContent(current)) {
+            Log.d(LOG_TAG, "Forecast unchanged, keeping snapshot " + current.version);
+            return current;
+        }
+        sCurrent = loaded;
+        return loaded;
+    }
+
+    private boolean hasSameContent(ForecastSnapshot other) {
+        return location.equals(other.location)
+                && mStartDate == other.mStartDate
+                && Arrays.equals(mDates, other.mDates)
+                && Arrays.equals(mWeatherIds, other.mWeatherIds)
+                && Arrays.equals(mDescriptions, other.mDescriptions)
+                && Arrays.equals(mHighs, other.mHighs)
+                && Arrays.equals(mLows, other.mLows);
+    }
+
+    private static ForecastSnapshot load(Context context, int version) {
+        String location = SettingsSnapshot.get(context).location;
+        long startDate = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(location, startDate),
+                FORECAST_COLUMNS, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        sQueries++;
+        if (cursor == null) {
+            return new ForecastSnapshot(location, startDate, version, 0);
+        }
+        try {
+            ForecastSnapshot snapshot =
+                    new ForecastSnapshot(location, startDate, version, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                snapshot.mDates[i] = cursor.getLong(INDEX_DATE);
+                snapshot.mWeatherIds[i] = cursor.getInt(INDEX_WEATHER_ID);
+                snapshot.mDescriptions[i] = cursor.getString(INDEX_SHORT_DESC);
+                snapshot.mHighs[i] = cursor.getDouble(INDEX_MAX_TEMP);
+                snapshot.mLows[i] = cursor.getDouble(INDEX_MIN_TEMP);
+            }
+            Log.d(LOG_TAG, "Forecast snapshot " + version + " for " + location + ": "
+                    + snapshot.size() + " days, " + sQueries + " queries so far");
+            return snapshot;
+        } finally {
+            cursor.close();
+        }
+    }
+}
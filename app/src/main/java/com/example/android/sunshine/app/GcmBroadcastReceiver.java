@@ -22,19 +22,21 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.v4.app.NotificationCompat;
+import android.support.v4.content.WakefulBroadcastReceiver;
 import android.util.Log;
 
 import com.google.android.gms.gcm.GoogleCloudMessaging;
 
-public class GcmBroadcastReceiver extends BroadcastReceiver {
+import java.util.List;
+
+public class GcmBroadcastReceiver extends WakefulBroadcastReceiver {
     private final String LOG_TAG = BroadcastReceiver.class.getSimpleName();
 
     private static final String EXTRA_SENDER = "from";
-    private static final String EXTRA_WEATHER = "weather";
-    private static final String EXTRA_LOCATION = "location";
+    static final String EXTRA_WEATHER = "weather";
+    static final String EXTRA_LOCATION = "location";
 
     public static final int NOTIFICATION_ID = 1;
-    private NotificationManager mNotificationManager;
 
     public GcmBroadcastReceiver() {
         super();
@@ -56,12 +58,8 @@ public class GcmBroadcastReceiver extends BroadcastReceiver {
             if (GoogleCloudMessaging.MESSAGE_TYPE_MESSAGE.equals(messageType)) {
                 // Is this our message?? Better be if you're going to act on it!
                 if (MainActivity.PROJECT_NUMBER.equals(extras.getString(EXTRA_SENDER))) {
-                    // Process message and then post a notification of the received message.
-                    String weather = extras.getString(EXTRA_WEATHER);
-                    String location = extras.getString(EXTRA_LOCATION);
-                    String alert = "Heads up: " + weather + " in " + location + "!";
-
-                    sendNotification(context, alert);
+                    // Forecast deltas and alerts are both handled by the service, under a wakelock.
+                    GcmIntentService.enqueue(context, extras);
                 }
 
                 Log.i(LOG_TAG, "Received: " + extras.toString());
@@ -69,25 +67,43 @@ public class GcmBroadcastReceiver extends BroadcastReceiver {
         }
     }
 
-    // Put the message into a notification and post it.
-    // This is just one simple example of what you might choose to do with a GCM message.
-    private void sendNotification(Context context, String msg) {
-        mNotificationManager = (NotificationManager)
-                context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-        PendingIntent contentIntent =
-                PendingIntent.getActivity(context, 0, new Intent(context, MainActivity.class), 0);
-
-        NotificationCompat.Builder mBuilder =
-                new NotificationCompat.Builder(context)
-                        .setSmallIcon(R.drawable.art_storm)
-                        .setContentTitle("Weather Alert!")
-                        .setStyle(new NotificationCompat.BigTextStyle()
-                                .bigText(msg))
-                        .setContentText(msg)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH);
+    // Put the current burst of alerts into a notification and post it.  A burst of more than one
+    // alert is shown as a summary; it only sounds again if a new burst started.
+    static void notifyAlerts(Context context, boolean sound) {
+        WeatherAlerts alerts = WeatherAlerts.getInstance();
+        int size = alerts.getBurstSize();
+        List<String> burst = alerts.getBurst();
+        // The burst keeps its newest lines, so the last one is the latest alert.
+        String msg = burst.get(burst.size() - 1);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+                .setSmallIcon(R.drawable.art_storm)
+                .setContentIntent(PendingIntent.getActivity(context, 0,
+                        new Intent(context, MainActivity.class), 0))
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setOnlyAlertOnce(!sound);
+        if (size > 1) {
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+            for (String line : burst) {
+                style.addLine(line);
+            }
+            if (size > burst.size()) {
+                style.setSummaryText(context.getString(R.string.format_more_weather_alerts,
+                        size - burst.size()));
+            }
+            builder.setContentTitle(context.getResources()
+                    .getQuantityString(R.plurals.title_weather_alerts, size, size))
+                    .setContentText(msg)
+                    .setNumber(size)
+                    .setStyle(style);
+        } else {
+            builder.setContentTitle(context.getResources()
+                    .getQuantityString(R.plurals.title_weather_alerts, 1))
+                    .setContentText(msg)
+                    .setStyle(new NotificationCompat.BigTextStyle().bigText(msg));
+        }
 
-        mBuilder.setContentIntent(contentIntent);
-        mNotificationManager.notify(NOTIFICATION_ID, mBuilder.build());
+        NotificationManager notificationManager = (NotificationManager)
+                context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(NOTIFICATION_ID, builder.build());
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v4.content.WakefulBroadcastReceiver;
+import android.util.Log;
+
+import com.example.android.sunshine.app.sync.ForecastDelta;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IntentService which handles the messages {@link GcmBroadcastReceiver} receives, so a burst of
+ * pushes never blocks the main thread.
+ * <p/>
+ * Each message is started with {@link WakefulBroadcastReceiver#startWakefulService}, which holds
+ * a wakelock until the message has been handled, and its intent is redelivered if the process
+ * dies first.  Messages are handled in batches: all the forecast deltas in a batch are written in
+ * one transaction and all its alerts end in one notification update.
+ * <p/>
+ * At most {@link #CAPACITY} messages may wait at once; further ones are rejected.  Rejected
+ * alerts are lost, which the alert pipeline would mostly have done to a burst anyway; a rejected
+ * delta instead asks for a sync, so the forecast still catches up.
+ */
+public class GcmIntentService extends IntentService {
+    private static final String LOG_TAG = GcmIntentService.class.getSimpleName();
+
+    private static final int CAPACITY = 64;
+    private static final int BATCH_SIZE = 16;
+
+    // Intents started but not handled yet.  Whichever onHandleIntent() runs first takes the
+    // intents queued by then, so the later calls for those intents find nothing left to do.
+    private static final Queue<Intent> sQueue = new ConcurrentLinkedQueue<Intent>();
+    private static final AtomicInteger sWaiting = new AtomicInteger();
+
+    // Instrumentation
+    private static final AtomicInteger sAccepted = new AtomicInteger();
+    private static final AtomicInteger sRejected = new AtomicInteger();
+    private static final AtomicInteger sBatches = new AtomicInteger();
+
+    public GcmIntentService() {
+        super("GcmIntentService");
+        setIntentRedelivery(true);
+    }
+
+    /**
+     * Starts the service for a message, unless too many are already waiting.  Cheap enough for
+     * the main thread.
+     *
+     * @return false if the message was rejected
+     */
+    static boolean enqueue(Context context, Bundle extras) {
+        if (sWaiting.incrementAndGet() > CAPACITY) {
+            sWaiting.decrementAndGet();
+            Log.w(LOG_TAG, "Too many messages waiting, rejected one; rejected "
+                    + sRejected.incrementAndGet());
+            if (ForecastDelta.isDelta(extras)) {
+                SunshineSyncAdapter.syncImmediately(context);
+            }
+            return false;
+        }
+        sAccepted.incrementAndGet();
+        WakefulBroadcastReceiver.startWakefulService(context,
+                new Intent(context, GcmIntentService.class).putExtras(extras));
+        return true;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null) {
+            if ((flags & START_FLAG_REDELIVERY) != 0) {
+                // The process died since the message was accepted, taking the count with it.
+                sWaiting.incrementAndGet();
+            }
+            sQueue.add(intent);
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        List<Intent> batch = new ArrayList<Intent>(BATCH_SIZE);
+        Intent queued;
+        while (batch.size() < BATCH_SIZE && (queued = sQueue.poll()) != null) {
+            batch.add(queued);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            process(batch);
+        } finally {
+            for (Intent handled : batch) {
+                sWaiting.decrementAndGet();
+                WakefulBroadcastReceiver.completeWakefulIntent(handled);
+            }
+        }
+        Log.d(LOG_TAG, "Handled " + batch.size() + " messages; accepted " + sAccepted.get()
+                + ", rejected " + sRejected.get() + ", batches " + sBatches.incrementAndGet());
+    }
+
+    private void process(List<Intent> batch) {
+        List<Bundle> deltas = new ArrayList<Bundle>(batch.size());
+        WeatherAlerts alerts = WeatherAlerts.getInstance();
+        boolean show = false;
+        boolean sound = false;
+        for (Intent intent : batch) {
+            Bundle extras = intent.getExtras();
+            if (ForecastDelta.isDelta(extras)) {
+                deltas.add(extras);
+                continue;
+            }
+            int result = alerts.offer(extras.getString(GcmBroadcastReceiver.EXTRA_LOCATION),
+                    extras.getString(GcmBroadcastReceiver.EXTRA_WEATHER),
+                    System.currentTimeMillis());
+            if (result == WeatherAlerts.RESULT_POSTED) {
+                show = true;
+                sound = true;
+            } else if (result == WeatherAlerts.RESULT_MERGED) {
+                show = true;
+            }
+        }
+        if (!deltas.isEmpty()) {
+            ForecastDelta.apply(this, deltas);
+        }
+        if (show) {
+            GcmBroadcastReceiver.notifyAlerts(this, sound);
+        }
+        Log.d(LOG_TAG, "Alerts received " + alerts.getReceivedCount() + ", dropped "
+                + alerts.getDroppedCount() + ", merged " + alerts.getMergedCount());
+    }
+}
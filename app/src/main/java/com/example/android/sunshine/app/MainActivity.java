@@ -22,7 +22,6 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
@@ -41,10 +40,12 @@ import com.google.android.gms.common.GooglePlayServicesUtil;
 import com.google.android.gms.gcm.GoogleCloudMessaging;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MainActivity extends AppCompatActivity implements ForecastFragment.Callback {
 
-    private final String LOG_TAG = MainActivity.class.getSimpleName();
+    private static final String LOG_TAG = MainActivity.class.getSimpleName();
     private static final String DETAILFRAGMENT_TAG = "DFTAG";
     private final static int PLAY_SERVICES_RESOLUTION_REQUEST = 9000;
     public static final String PROPERTY_REG_ID = "registration_id";
@@ -58,10 +59,19 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
 
     private boolean mTwoPane;
     private String mLocation;
-    private GoogleCloudMessaging mGcm;
+
+    // Startup work deferred until after the first frame, see createStartupTasks().
+    private static final String TASK_SYNC_ACCOUNT = "sync-account";
+    private static final String TASK_PLAY_SERVICES = "play-services";
+    private static final String TASK_PLAY_SERVICES_DIALOGS = "play-services-dialogs";
+    private static final String TASK_GCM_REGISTRATION = "gcm-registration";
+
+    private StartupOrchestrator mStartup;
+    private boolean mResumedBefore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupOrchestrator.markStart();
         super.onCreate(savedInstanceState);
         mLocation = Utility.getPreferredLocation(this);
         Uri contentUri = getIntent() != null ? getIntent().getData() : null;
@@ -103,28 +113,73 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
 
-        SunshineSyncAdapter.initializeSyncAdapter(this);
+        mStartup = createStartupTasks(this);
+        mStartup.startAfterFirstDraw(getWindow().getDecorView());
+    }
 
-        // If Google Play Services is not available, some features, such as GCM-powered weather
-        // alerts, will not be available.
-        if (checkPlayServices()) {
-            mGcm = GoogleCloudMessaging.getInstance(this);
-            String regId = getRegistrationId(this);
-
-            if (PROJECT_NUMBER.equals("Your Project Number")) {
-                new AlertDialog.Builder(this)
-                .setTitle("Needs Project Number")
-                .setMessage("GCM will not function in Sunshine until you set the Project Number to the one from the Google Developers Console.")
-                .setPositiveButton(android.R.string.ok, null)
-                .create().show();
-            } else if (regId.isEmpty()) {
-                registerInBackground(this);
-            }
-        } else {
-            Log.i(LOG_TAG, "No valid Google Play Services APK. Weather alerts will be disabled.");
-            // Store regID as null
-            storeRegistrationId(this, null);
-        }
+    /**
+     * Declares the initialization that isn't needed for the first frame.  Everything that talks to
+     * other processes runs on a background thread; only the dialogs are shown on the main thread.
+     * The tasks may outlive the activity, so they only hold on to it weakly.
+     */
+    private static StartupOrchestrator createStartupTasks(MainActivity activity) {
+        final Context appContext = activity.getApplicationContext();
+        final WeakReference<MainActivity> activityRef = new WeakReference<MainActivity>(activity);
+        final AtomicInteger playServicesResult =
+                new AtomicInteger(ConnectionResult.SERVICE_MISSING);
+        return new StartupOrchestrator()
+                .addBackgroundTask(TASK_SYNC_ACCOUNT, new Runnable() {
+                    @Override
+                    public void run() {
+                        SunshineSyncAdapter.initializeSyncAdapter(appContext);
+                    }
+                })
+                .addBackgroundTask(TASK_PLAY_SERVICES, new Runnable() {
+                    @Override
+                    public void run() {
+                        playServicesResult.set(
+                                GooglePlayServicesUtil.isGooglePlayServicesAvailable(appContext));
+                    }
+                })
+                .addMainThreadTask(TASK_PLAY_SERVICES_DIALOGS, new Runnable() {
+                    @Override
+                    public void run() {
+                        MainActivity activity = activityRef.get();
+                        if (activity == null || activity.isFinishing()) {
+                            return;
+                        }
+                        // If Google Play Services is not available, some features, such as
+                        // GCM-powered weather alerts, will not be available.
+                        if (activity.handlePlayServicesResult(playServicesResult.get())
+                                && PROJECT_NUMBER.equals("Your Project Number")) {
+                            new AlertDialog.Builder(activity)
+                            .setTitle("Needs Project Number")
+                            .setMessage("GCM will not function in Sunshine until you set the Project Number to the one from the Google Developers Console.")
+                            .setPositiveButton(android.R.string.ok, null)
+                            .create().show();
+                        }
+                    }
+                }, TASK_PLAY_SERVICES)
+                .addBackgroundTask(TASK_GCM_REGISTRATION, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (playServicesResult.get() != ConnectionResult.SUCCESS) {
+                            Log.i(LOG_TAG, "No valid Google Play Services APK. Weather alerts will be disabled.");
+                            // Store regID as null
+                            storeRegistrationId(appContext, null);
+                        } else if (!PROJECT_NUMBER.equals("Your Project Number")
+                                && getRegistrationId(appContext).isEmpty()) {
+                            // Already on a background thread, so register right here.
+                            register(appContext);
+                        }
+                    }
+                }, TASK_PLAY_SERVICES);
+    }
+
+    @Override
+    protected void onDestroy() {
+        mStartup.cancel();
+        super.onDestroy();
     }
 
     @Override
@@ -155,9 +210,11 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
 
         // If Google Play Services is not available, some features, such as GCM-powered weather
         // alerts, will not be available.
-        if (!checkPlayServices()) {
+        // The first check is part of the deferred startup work, see onCreate.
+        if (mResumedBefore && !checkPlayServices()) {
             // Store regID as null
         }
+        mResumedBefore = true;
 
         String location = Utility.getPreferredLocation(this);
         // update the location in our second pane using the fragment manager
@@ -176,6 +233,8 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
 
     @Override
     public void onItemSelected(Uri contentUri, ForecastAdapter.ForecastAdapterViewHolder vh) {
+        // Start formatting the days around the selection, so stepping to them is instant.
+        DetailSnapshotCache.prefetchNeighbours(this, contentUri);
         if (mTwoPane) {
             // In two-pane mode, show the detail view in this activity by
             // adding or replacing the detail fragment using a
@@ -206,7 +265,10 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
      * the Google Play Store or enable it in the device's system settings.
      */
     private boolean checkPlayServices() {
-        int resultCode = GooglePlayServicesUtil.isGooglePlayServicesAvailable(this);
+        return handlePlayServicesResult(GooglePlayServicesUtil.isGooglePlayServicesAvailable(this));
+    }
+
+    private boolean handlePlayServicesResult(int resultCode) {
         if (resultCode != ConnectionResult.SUCCESS) {
             if (GooglePlayServicesUtil.isUserRecoverableError(resultCode)) {
                 GooglePlayServicesUtil.getErrorDialog(resultCode, this,
@@ -228,7 +290,7 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
      * @return registration ID, or empty string if there is no existing
      *         registration ID.
      */
-    private String getRegistrationId(Context context) {
+    private static String getRegistrationId(Context context) {
         final SharedPreferences prefs = getGCMPreferences(context);
         String registrationId = prefs.getString(PROPERTY_REG_ID, "");
         if (registrationId.isEmpty()) {
@@ -251,11 +313,11 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     /**
      * @return Application's {@code SharedPreferences}.
      */
-    private SharedPreferences getGCMPreferences(Context context) {
+    private static SharedPreferences getGCMPreferences(Context context) {
         // Sunshine persists the registration ID in shared preferences, but
         // how you store the registration ID in your app is up to you. Just make sure
         // that it is private!
-        return getSharedPreferences(MainActivity.class.getSimpleName(), Context.MODE_PRIVATE);
+        return context.getSharedPreferences(MainActivity.class.getSimpleName(), Context.MODE_PRIVATE);
     }
 
     /**
@@ -273,43 +335,35 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     }
 
     /**
-     * Registers the application with GCM servers asynchronously.
+     * Registers the application with GCM servers.  Blocks, so must not be called on the main
+     * thread.
      * <p>
      * Stores the registration ID and app versionCode in the application's
      * shared preferences.
      */
-    private void registerInBackground(final Context context) {
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... params) {
-                String msg = "";
-                try {
-                    if (mGcm == null) {
-                        mGcm = GoogleCloudMessaging.getInstance(context);
-                    }
-                    String regId = mGcm.register(PROJECT_NUMBER);
-                    msg = "Device registered, registration ID=" + regId;
-
-                    // You should send the registration ID to your server over HTTP,
-                    // so it can use GCM/HTTP or CCS to send messages to your app.
-                    // The request to your server should be authenticated if your app
-                    // is using accounts.
-                    //sendRegistrationIdToBackend();
-                    // For this demo: we don't need to send it because the device
-                    // will send upstream messages to a server that echo back the
-                    // message using the 'from' address in the message.
-
-                    // Persist the registration ID - no need to register again.
-                    storeRegistrationId(context, regId);
-                } catch (IOException ex) {
-                    msg = "Error :" + ex.getMessage();
-                    // TODO: If there is an error, don't just keep trying to register.
-                    // Require the user to click a button again, or perform
-                    // exponential back-off.
-                }
-                return null;
-            }
-        }.execute(null, null, null);
+    private static void register(Context context) {
+        String msg = "";
+        try {
+            String regId = GoogleCloudMessaging.getInstance(context).register(PROJECT_NUMBER);
+            msg = "Device registered, registration ID=" + regId;
+
+            // You should send the registration ID to your server over HTTP,
+            // so it can use GCM/HTTP or CCS to send messages to your app.
+            // The request to your server should be authenticated if your app
+            // is using accounts.
+            //sendRegistrationIdToBackend();
+            // For this demo: we don't need to send it because the device
+            // will send upstream messages to a server that echo back the
+            // message using the 'from' address in the message.
+
+            // Persist the registration ID - no need to register again.
+            storeRegistrationId(context, regId);
+        } catch (IOException ex) {
+            msg = "Error :" + ex.getMessage();
+            // TODO: If there is an error, don't just keep trying to register.
+            // Require the user to click a button again, or perform
+            // exponential back-off.
+        }
     }
 
     /**
@@ -319,7 +373,7 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
      * @param context application's context.
      * @param regId registration ID
      */
-    private void storeRegistrationId(Context context, String regId) {
+    private static void storeRegistrationId(Context context, String regId) {
         final SharedPreferences prefs = getGCMPreferences(context);
         int appVersion = getAppVersion(context);
         Log.i(LOG_TAG, "Saving regId on app version " + appVersion);
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable copy of the settings Sunshine reads on its hot paths: list binding, temperature
+ * formatting, widgets, the sync adapter and notifications.
+ * <p/>
+ * The current snapshot is swapped atomically whenever one of the preferences changes, so readers
+ * never take a lock, never touch {@link SharedPreferences} and never resolve a key string.
+ */
+public final class SettingsSnapshot {
+
+    public final String location;
+    public final boolean isMetric;
+    public final boolean usingLocalGraphics;
+    public final @SunshineSyncAdapter.LocationStatus int locationStatus;
+    public final boolean notificationsEnabled;
+    /**
+     * Incremented every time the snapshot is rebuilt, so callers can cheaply tell whether
+     * anything they derived from an older snapshot is stale.
+     */
+    public final int version;
+
+    private final String mArtPack;
+    // Art pack urls, indexed by WeatherConditions category.
+    private final String[] mArtUrls;
+
+    private static volatile SettingsSnapshot sCurrent;
+
+    // Preference keys, resolved once.
+    private static String sLocationKey;
+    private static String sUnitsKey;
+    private static String sArtPackKey;
+    private static String sLocationStatusKey;
+    private static String sNotificationsKey;
+
+    private static SharedPreferences sPreferences;
+    private static Context sAppContext;
+
+    // SharedPreferences only keeps a weak reference to its listeners, so hold on to it here.
+    private static final SharedPreferences.OnSharedPreferenceChangeListener sListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                      String key) {
+                    // clear() reports a null key on newer platforms, and any of the settings
+                    // may have gone with it.
+                    if (key == null || sLocationKey.equals(key) || sUnitsKey.equals(key)
+                            || sArtPackKey.equals(key) || sLocationStatusKey.equals(key)
+                            || sNotificationsKey.equals(key)) {
+                        refresh(sAppContext);
+                    }
+                }
+            };
+
+    // Instrumentation: how often the settings were read from a snapshot, and how many
+    // SharedPreferences lookups were needed to build those snapshots.
+    private static final AtomicInteger sSnapshotReads = new AtomicInteger();
+    private static final AtomicInteger sPreferenceLookups = new AtomicInteger();
+
+    @SuppressWarnings("ResourceType")
+    private SettingsSnapshot(String location, boolean isMetric, String artPackFormat,
+                             boolean usingLocalGraphics, int locationStatus,
+                             boolean notificationsEnabled, int version) {
+        this.location = location;
+        this.isMetric = isMetric;
+        this.usingLocalGraphics = usingLocalGraphics;
+        this.locationStatus = locationStatus;
+        this.notificationsEnabled = notificationsEnabled;
+        this.version = version;
+        mArtPack = artPackFormat;
+        mArtUrls = WeatherConditions.resolveArtUrls(artPackFormat);
+    }
+
+    /**
+     * @param category one of the WeatherConditions categories
+     * @return the art pack url for the category, or null if the category is unknown
+     */
+    public String getArtUrl(int category) {
+        return category == WeatherConditions.CATEGORY_UNKNOWN ? null : mArtUrls[category];
+    }
+
+    /**
+     * Returns the current settings.  Only the very first call reads SharedPreferences.
+     *
+     * @param context Context used to load the preferences the first time
+     */
+    public static SettingsSnapshot get(Context context) {
+        SettingsSnapshot snapshot = sCurrent;
+        if (snapshot == null) {
+            snapshot = initialize(context);
+        }
+        if (BuildConfig.DEBUG) {
+            sSnapshotReads.incrementAndGet();
+        }
+        return snapshot;
+    }
+
+    private static synchronized SettingsSnapshot initialize(Context context) {
+        if (sCurrent == null) {
+            sAppContext = context.getApplicationContext();
+            sLocationKey = sAppContext.getString(R.string.pref_location_key);
+            sUnitsKey = sAppContext.getString(R.string.pref_units_key);
+            sArtPackKey = sAppContext.getString(R.string.pref_art_pack_key);
+            sLocationStatusKey = sAppContext.getString(R.string.pref_location_status_key);
+            sNotificationsKey = sAppContext.getString(R.string.pref_enable_notifications_key);
+            sPreferences = PreferenceManager.getDefaultSharedPreferences(sAppContext);
+            sPreferences.registerOnSharedPreferenceChangeListener(sListener);
+            sCurrent = load(0);
+        }
+        return sCurrent;
+    }
+
+    /**
+     * Rebuilds the snapshot from SharedPreferences.  The change listener does this for edits made
+     * through the settings screen; code that writes one of the preferences itself should call this
+     * right after the write so that readers on other threads see the new value immediately.
+     *
+     * @param context Context used to load the preferences if no snapshot exists yet
+     */
+    public static synchronized void refresh(Context context) {
+        if (sCurrent == null) {
+            initialize(context);
+        } else {
+            sCurrent = load(sCurrent.version + 1);
+        }
+    }
+
+    private static SettingsSnapshot load(int version) {
+        Context context = sAppContext;
+        SharedPreferences prefs = sPreferences;
+        String metric = context.getString(R.string.pref_units_metric);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+
+        String location = prefs.getString(sLocationKey,
+                context.getString(R.string.pref_location_default));
+        boolean isMetric = prefs.getString(sUnitsKey, metric).equals(metric);
+        String artPack = prefs.getString(sArtPackKey, sunshineArtPack);
+        int locationStatus = prefs.getInt(sLocationStatusKey,
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+        boolean notificationsEnabled = prefs.getBoolean(sNotificationsKey,
+                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+        sPreferenceLookups.addAndGet(5);
+
+        // Writers refresh explicitly and the listener refreshes again; only the first one of
+        // those rebuilds the snapshot.
+        SettingsSnapshot current = sCurrent;
+        if (current != null && current.location.equals(location) && current.isMetric == isMetric
+                && current.mArtPack.equals(artPack) && current.locationStatus == locationStatus
+                && current.notificationsEnabled == notificationsEnabled) {
+            return current;
+        }
+        return new SettingsSnapshot(location, isMetric, artPack, artPack.equals(sunshineArtPack),
+                locationStatus, notificationsEnabled, version);
+    }
+
+    /**
+     * @return how many times settings have been read through a snapshot, counted in debug builds
+     * only.  Before snapshots were introduced, each of these reads was one SharedPreferences
+     * lookup.
+     */
+    public static int getSnapshotReadCount() {
+        return sSnapshotReads.get();
+    }
+
+    /**
+     * @return how many SharedPreferences lookups were made to build snapshots.
+     */
+    public static int getPreferenceLookupCount() {
+        return sPreferenceLookups.get();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs initialization that isn't needed to draw the first frame once that frame is on screen.
+ * <p/>
+ * Each task names the tasks it depends on and whether it has to run on the main thread; all other
+ * tasks run on a background thread.  A task starts as soon as all of its dependencies finished.
+ * The time each startup phase and task took is written to the log.
+ */
+public class StartupOrchestrator {
+    private static final String LOG_TAG = StartupOrchestrator.class.getSimpleName();
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    // Phases that were already reported during this process's lifetime.
+    private static final Set<String> sReportedPhases = new HashSet<String>();
+    private static long sStartTime = -1;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Task> mPending = new ArrayList<Task>();
+    private final Set<String> mFinished = new HashSet<String>();
+    private boolean mCancelled;
+
+    private static class Task {
+        final String name;
+        final boolean mainThread;
+        final Runnable work;
+        final String[] dependencies;
+
+        Task(String name, boolean mainThread, Runnable work, String[] dependencies) {
+            this.name = name;
+            this.mainThread = mainThread;
+            this.work = work;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Records when startup began, the first time it is called in this process.  Call it first
+     * thing in the launcher activity's onCreate, before the layout is inflated, so the phase
+     * times include it.
+     */
+    public static void markStart() {
+        synchronized (StartupOrchestrator.class) {
+            if (sStartTime < 0) {
+                sStartTime = SystemClock.elapsedRealtime();
+            }
+        }
+    }
+
+    /**
+     * Adds a task that runs on the background thread once its dependencies finished.
+     */
+    public StartupOrchestrator addBackgroundTask(String name, Runnable work, String... dependsOn) {
+        mPending.add(new Task(name, false, work, dependsOn));
+        return this;
+    }
+
+    /**
+     * Adds a task that runs on the main thread once its dependencies finished.
+     */
+    public StartupOrchestrator addMainThreadTask(String name, Runnable work, String... dependsOn) {
+        mPending.add(new Task(name, true, work, dependsOn));
+        return this;
+    }
+
+    /**
+     * Starts running the tasks right after the given view is first drawn.
+     */
+    public void startAfterFirstDraw(final View view) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                reportPhase("first-draw");
+                // Posting puts us behind the draw traversal that is about to happen.
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduleReadyTasks();
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Drops every task that hasn't started yet.  Call from the owning activity's onDestroy.
+     */
+    public void cancel() {
+        synchronized (this) {
+            mCancelled = true;
+            mPending.clear();
+        }
+    }
+
+    private void scheduleReadyTasks() {
+        List<Task> ready = new ArrayList<Task>();
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            for (int i = mPending.size() - 1; i >= 0; i--) {
+                Task task = mPending.get(i);
+                if (dependenciesFinished(task)) {
+                    ready.add(0, task);
+                    mPending.remove(i);
+                }
+            }
+        }
+        for (final Task task : ready) {
+            Runnable runner = new Runnable() {
+                @Override
+                public void run() {
+                    runTask(task);
+                }
+            };
+            if (task.mainThread) {
+                mMainHandler.post(runner);
+            } else {
+                sExecutor.execute(runner);
+            }
+        }
+    }
+
+    private boolean dependenciesFinished(Task task) {
+        for (String dependency : task.dependencies) {
+            if (!mFinished.contains(dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void runTask(Task task) {
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+        }
+        long start = SystemClock.elapsedRealtime();
+        try {
+            task.work.run();
+        } finally {
+            Log.d(LOG_TAG, "Startup task " + task.name + " took "
+                    + (SystemClock.elapsedRealtime() - start) + "ms on "
+                    + (task.mainThread ? "main" : "background") + " thread, finished at +"
+                    + (SystemClock.elapsedRealtime() - sStartTime) + "ms");
+            synchronized (this) {
+                mFinished.add(task.name);
+            }
+            scheduleReadyTasks();
+        }
+    }
+
+    /**
+     * Logs how long after startup a phase was first reached, e.g. "first-forecast".  Only the
+     * first report of each phase per process is logged.
+     */
+    public static void reportPhase(String phase) {
+        synchronized (StartupOrchestrator.class) {
+            if (sStartTime < 0 || !sReportedPhases.add(phase)) {
+                return;
+            }
+            Log.d(LOG_TAG, "Startup phase " + phase + " reached at +"
+                    + (SystemClock.elapsedRealtime() - sStartTime) + "ms");
+        }
+    }
+}
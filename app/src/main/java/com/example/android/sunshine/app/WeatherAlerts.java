@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides what happens to each weather alert pushed through GCM before it reaches the
+ * notification shade.
+ * <p/>
+ * An alert with the same weather and location as one seen within the dedup window is dropped.
+ * Each location may only raise a few alerts per rate window; the rest are dropped too.  Alerts
+ * arriving shortly after the last one shown are merged into it, so a burst ends up as a single
+ * summary notification instead of one alert sound per message.
+ */
+public final class WeatherAlerts {
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({RESULT_POSTED, RESULT_MERGED, RESULT_DUPLICATE, RESULT_RATE_LIMITED})
+    public @interface Result {}
+
+    /** The alert starts a new notification. */
+    public static final int RESULT_POSTED = 0;
+    /** The alert joins the burst already showing; see {@link #getBurst()}. */
+    public static final int RESULT_MERGED = 1;
+    /** The same alert was seen within the dedup window. */
+    public static final int RESULT_DUPLICATE = 2;
+    /** The location has raised too many alerts recently. */
+    public static final int RESULT_RATE_LIMITED = 3;
+
+    private static final long MINUTE_IN_MILLIS = 60 * 1000;
+    private static final long DEDUP_WINDOW_MS = 30 * MINUTE_IN_MILLIS;
+    private static final long RATE_WINDOW_MS = 60 * MINUTE_IN_MILLIS;
+    private static final int MAX_PER_LOCATION = 3;
+    private static final long BURST_WINDOW_MS = 2 * MINUTE_IN_MILLIS;
+
+    // InboxStyle shows at most this many lines anyway.
+    static final int MAX_BURST_LINES = 5;
+
+    private static WeatherAlerts sInstance;
+
+    private final long mDedupWindowMs;
+    private final long mRateWindowMs;
+    private final int mMaxPerLocation;
+    private final long mBurstWindowMs;
+
+    // When each alert key was last seen, by "location|weather".
+    private final Map<String, Long> mLastSeen = new HashMap<String, Long>();
+    // Times of the alerts let through for each location, oldest first.
+    private final Map<String, ArrayDeque<Long>> mRecentByLocation =
+            new HashMap<String, ArrayDeque<Long>>();
+
+    private final List<String> mBurst = new ArrayList<String>();
+    private int mBurstSize;
+    private long mLastAlertTime;
+
+    // Instrumentation
+    private int mReceived;
+    private int mDropped;
+    private int mMerged;
+
+    WeatherAlerts(long dedupWindowMs, long rateWindowMs, int maxPerLocation, long burstWindowMs) {
+        mDedupWindowMs = dedupWindowMs;
+        mRateWindowMs = rateWindowMs;
+        mMaxPerLocation = maxPerLocation;
+        mBurstWindowMs = burstWindowMs;
+    }
+
+    public static synchronized WeatherAlerts getInstance() {
+        if (sInstance == null) {
+            sInstance = new WeatherAlerts(DEDUP_WINDOW_MS, RATE_WINDOW_MS, MAX_PER_LOCATION,
+                    BURST_WINDOW_MS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Runs an incoming alert through dedup, rate limiting and batching.
+     *
+     * @param now the current time, in milliseconds
+     * @return what to do with the alert
+     */
+    public synchronized @Result int offer(String location, String weather, long now) {
+        mReceived++;
+        String key = (location + "|" + weather).toLowerCase(Locale.US);
+
+        pruneLastSeen(now);
+        Long lastSeen = mLastSeen.get(key);
+        // A repeat extends the window, so a steady stream of the same alert stays quiet.
+        mLastSeen.put(key, now);
+        if (lastSeen != null) {
+            mDropped++;
+            return RESULT_DUPLICATE;
+        }
+
+        pruneRecent(now);
+        ArrayDeque<Long> recent = mRecentByLocation.get(location);
+        if (recent == null) {
+            recent = new ArrayDeque<Long>(mMaxPerLocation);
+            mRecentByLocation.put(location, recent);
+        }
+        if (recent.size() >= mMaxPerLocation) {
+            mDropped++;
+            return RESULT_RATE_LIMITED;
+        }
+        recent.addLast(now);
+
+        String text = "Heads up: " + weather + " in " + location + "!";
+        boolean merge = mBurstSize > 0 && now - mLastAlertTime < mBurstWindowMs;
+        mLastAlertTime = now;
+        if (!merge) {
+            mBurst.clear();
+            mBurstSize = 0;
+        }
+        if (mBurst.size() == MAX_BURST_LINES) {
+            mBurst.remove(0);
+        }
+        mBurst.add(text);
+        mBurstSize++;
+        if (merge) {
+            mMerged++;
+            return RESULT_MERGED;
+        }
+        return RESULT_POSTED;
+    }
+
+    private void pruneLastSeen(long now) {
+        Iterator<Long> times = mLastSeen.values().iterator();
+        while (times.hasNext()) {
+            if (now - times.next() >= mDedupWindowMs) {
+                times.remove();
+            }
+        }
+    }
+
+    // Drops the times that left the rate window, and the locations left with none.
+    private void pruneRecent(long now) {
+        Iterator<ArrayDeque<Long>> locations = mRecentByLocation.values().iterator();
+        while (locations.hasNext()) {
+            ArrayDeque<Long> recent = locations.next();
+            while (!recent.isEmpty() && now - recent.peekFirst() >= mRateWindowMs) {
+                recent.removeFirst();
+            }
+            if (recent.isEmpty()) {
+                locations.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the text of the newest alerts in the current burst, newest last, at most
+     * {@link #MAX_BURST_LINES} of them
+     */
+    public synchronized List<String> getBurst() {
+        return new ArrayList<String>(mBurst);
+    }
+
+    /**
+     * @return how many alerts the current burst holds, including any beyond the lines kept
+     */
+    public synchronized int getBurstSize() {
+        return mBurstSize;
+    }
+
+    public synchronized int getReceivedCount() {
+        return mReceived;
+    }
+
+    public synchronized int getDroppedCount() {
+        return mDropped;
+    }
+
+    public synchronized int getMergedCount() {
+        return mMerged;
+    }
+
+    /**
+     * @return how many locations have alerts within the rate window
+     */
+    synchronized int getTrackedLocationCount() {
+        return mRecentByLocation.size();
+    }
+}
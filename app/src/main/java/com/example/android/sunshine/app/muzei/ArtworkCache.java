@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.app.WallpaperManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.v4.content.FileProvider;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Local copies of the weather photographs, scaled down to the wallpaper size.
+ * <p/>
+ * The originals are several megabytes each.  Each one is downloaded once, decoded with just
+ * enough subsampling to still cover the wallpaper, and stored as a JPEG in the cache directory.
+ * After that, Muzei loads the local file through a {@link FileProvider} uri.  Files are
+ * evicted least recently used first once the directory grows past its byte budget.
+ */
+public class ArtworkCache {
+    private static final String LOG_TAG = ArtworkCache.class.getSimpleName();
+
+    // Must match the cache-path in res/xml/artwork_paths.xml
+    private static final String DIRECTORY = "artwork";
+
+    // A wallpaper-sized JPEG is a few hundred kilobytes, so this holds every condition.
+    private static final long MAX_BYTES = 8 * 1024 * 1024;
+
+    private static final String SUFFIX = ".jpg";
+    private static final int JPEG_QUALITY = 90;
+    private static final int TIMEOUT_MS = 30 * 1000;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final int mTargetWidth;
+    private final int mTargetHeight;
+
+    /**
+     * @param directory where the scaled images are kept
+     * @param maxBytes most bytes the directory may hold after {@link #trim()}
+     * @param targetWidth width the images must cover, in pixels
+     * @param targetHeight height the images must cover, in pixels
+     */
+    ArtworkCache(File directory, long maxBytes, int targetWidth, int targetHeight) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mTargetWidth = targetWidth;
+        mTargetHeight = targetHeight;
+    }
+
+    /**
+     * @return the cache sized for this device's wallpaper
+     */
+    public static ArtworkCache create(Context context) {
+        WallpaperManager wallpaperManager = WallpaperManager.getInstance(context);
+        int width = wallpaperManager.getDesiredMinimumWidth();
+        int height = wallpaperManager.getDesiredMinimumHeight();
+        if (width <= 0 || height <= 0) {
+            DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+            width = Math.max(metrics.widthPixels, metrics.heightPixels);
+            height = width;
+        }
+        return new ArtworkCache(new File(context.getCacheDir(), DIRECTORY), MAX_BYTES,
+                width, height);
+    }
+
+    /**
+     * @return the uri other apps can read the file through, once granted permission
+     */
+    public static Uri getUri(Context context, File file) {
+        return FileProvider.getUriForFile(context, context.getString(R.string.artwork_authority),
+                file);
+    }
+
+    private File fileFor(String url) {
+        return new File(mDirectory, Integer.toHexString(url.hashCode()) + SUFFIX);
+    }
+
+    /**
+     * @return the cached image for the url, or null if it isn't cached
+     */
+    public File get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+        // Eviction goes by modification time
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Returns the cached image for the url, downloading it first if necessary.  Blocks on the
+     * network, so it must not be called from the main thread.
+     */
+    public File fetch(String url) throws IOException {
+        File file = get(url);
+        if (file != null) {
+            return file;
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        try {
+            InputStream in = connection.getInputStream();
+            try {
+                return put(url, in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Scales the image read from the stream down to the target size and caches it for the url.
+     *
+     * @return the cached file
+     * @throws IOException if the image can't be read, decoded or written
+     */
+    public File put(String url, InputStream in) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Can't create " + mDirectory);
+        }
+        // Decoding takes two passes over the original, so spool it to disk first.
+        File original = File.createTempFile("download", null, mDirectory);
+        File scaled = File.createTempFile("scaled", null, mDirectory);
+        try {
+            copy(in, original);
+            Bitmap bitmap = decodeScaled(original);
+            if (bitmap == null) {
+                throw new IOException("Can't decode the image at " + url);
+            }
+            OutputStream out = new FileOutputStream(scaled);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            } finally {
+                out.close();
+                bitmap.recycle();
+            }
+            File file = fileFor(url);
+            if (!scaled.renameTo(file)) {
+                throw new IOException("Can't rename " + scaled + " to " + file);
+            }
+            Log.d(LOG_TAG, "Cached " + url + ": " + original.length() + " bytes down to "
+                    + file.length());
+            trim();
+            return file;
+        } finally {
+            original.delete();
+            scaled.delete();
+        }
+    }
+
+    private static void copy(InputStream in, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Decodes the image so that it just covers the target size, keeping its aspect ratio.
+     */
+    private Bitmap decodeScaled(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int originalWidth = options.outWidth;
+        int originalHeight = options.outHeight;
+        if (originalWidth <= 0 || originalHeight <= 0) {
+            return null;
+        }
+        float scale = Math.max((float) mTargetWidth / originalWidth,
+                (float) mTargetHeight / originalHeight);
+
+        // Subsample by the largest power of two that keeps the image at least the target size,
+        // then scale the rest of the way.
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (scale * options.inSampleSize * 2 <= 1) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeFile(file.getPath(), options);
+        if (decoded == null || scale >= 1) {
+            return decoded;
+        }
+        int width = Math.max(1, Math.round(originalWidth * scale));
+        int height = Math.max(1, Math.round(originalHeight * scale));
+        if (width == decoded.getWidth() && height == decoded.getHeight()) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Deletes the least recently used images until the cache fits its byte budget.
+     *
+     * @return the bytes left in the cache
+     */
+    public long trim() {
+        // Downloads in progress are temporary files without the suffix; leave them alone.
+        File[] files = mDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return 0;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= mMaxBytes) {
+            return total;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && total > mMaxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+                Log.d(LOG_TAG, "Evicted " + files[i].getName());
+            }
+        }
+        return total;
+    }
+}
@@ -15,28 +15,36 @@
  */
 package com.example.android.sunshine.app.muzei;
 
+import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.SharedPreferences;
 import android.net.Uri;
+import android.util.Log;
 
+import com.example.android.sunshine.app.ForecastSnapshot;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Muzei source that changes your background based on the current weather conditions
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
-    private static final String[] FORECAST_COLUMNS = new String[]{
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
+    private static final String LOG_TAG = WeatherMuzeiSource.class.getSimpleName();
+
+    private static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
+
+    // Counts updates that didn't need a new artwork, in its own private preferences file.
+    private static final String PREFS_NAME = "muzei";
+    private static final String PREF_SKIPPED_UPDATES = "skipped_updates";
+
+    // The forecast version the current artwork was published from.
+    private static int sPublishedVersion = -1;
 
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
@@ -48,32 +56,75 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
         boolean dataUpdated = intent != null &&
                 SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction());
         if (dataUpdated && isEnabled()) {
+            if (ForecastSnapshot.get(this).version == sPublishedVersion) {
+                Log.d(LOG_TAG, "Forecast unchanged, keeping the current artwork");
+                countSkippedUpdate();
+                return;
+            }
             onUpdate(UPDATE_REASON_OTHER);
         }
     }
 
     @Override
     protected void onUpdate(int reason) {
-        String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (cursor.moveToFirst()) {
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            String desc = cursor.getString(INDEX_SHORT_DESC);
+        ForecastSnapshot forecast = ForecastSnapshot.get(this);
+        sPublishedVersion = forecast.version;
+        if (!forecast.isEmpty()) {
+            int weatherId = forecast.getWeatherId(0);
+            String desc = forecast.getDescription(0);
 
             String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
+            // Don't make Muzei reload the wallpaper for the artwork it is already showing
+            if (imageUrl != null && isPublished(imageUrl, desc, forecast.location)) {
+                Log.d(LOG_TAG, "Condition unchanged, keeping the current artwork");
+                countSkippedUpdate();
+                return;
+            }
             // Only publish a new wallpaper if we have a valid image
             if (imageUrl != null) {
                 publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
+                        .imageUri(getLocalImageUri(imageUrl))
+                        .token(imageUrl)
                         .title(desc)
-                        .byline(location)
+                        .byline(forecast.location)
                         .viewIntent(new Intent(this, MainActivity.class))
                         .build());
             }
         }
-        cursor.close();
+    }
+
+    /**
+     * @return true if the current artwork shows the image for the given description and location.
+     * The artwork's token is the url of the original image.
+     */
+    private boolean isPublished(String imageUrl, String description, String location) {
+        Artwork current = getCurrentArtwork();
+        return current != null
+                && imageUrl.equals(current.getToken())
+                && description.equals(current.getTitle())
+                && location.equals(current.getByline());
+    }
+
+    private void countSkippedUpdate() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long skipped = prefs.getLong(PREF_SKIPPED_UPDATES, 0) + 1;
+        prefs.edit().putLong(PREF_SKIPPED_UPDATES, skipped).apply();
+        Log.d(LOG_TAG, "Skipped artwork updates: " + skipped);
+    }
+
+    /**
+     * Returns a uri for a local, wallpaper-sized copy of the image, so that Muzei doesn't have to
+     * download the original.  Falls back to the original when the copy can't be made.
+     */
+    private Uri getLocalImageUri(String imageUrl) {
+        try {
+            File file = ArtworkCache.create(this).fetch(imageUrl);
+            Uri uri = ArtworkCache.getUri(this, file);
+            grantUriPermission(MUZEI_PACKAGE, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            return uri;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Error caching artwork from " + imageUrl, e);
+            return Uri.parse(imageUrl);
+        }
     }
 }
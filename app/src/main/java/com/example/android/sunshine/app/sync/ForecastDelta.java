@@ -0,0 +1,168 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.android.sunshine.app.ForecastSnapshot;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.widget.WidgetUpdateScheduler;
+import com.example.android.sunshine.shared.Forecast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Forecast changes pushed through GCM, applied to the provider without a download.
+ * <p/>
+ * A delta message carries the location setting it applies to and the changed days in the
+ * {@link com.example.android.sunshine.shared.ForecastCodec} encoding, Base64 encoded because GCM
+ * data values are strings.  Only days the provider already holds are updated: the encoding has
+ * no humidity, pressure or wind, which a new row needs.  New days arrive with the next sync.
+ * <p/>
+ * The encoding has no description either, so a day's short description keeps the one
+ * OpenWeatherMap sent until the next sync, even if its weather id changes.
+ */
+public class ForecastDelta {
+    private static final String LOG_TAG = ForecastDelta.class.getSimpleName();
+
+    static final String EXTRA_LOCATION = "location";
+    static final String EXTRA_FORECAST = "forecast";
+
+    private static final String DAY_SELECTION =
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                    + WeatherContract.WeatherEntry.COLUMN_DATE + " = ?";
+
+    private ForecastDelta() {
+    }
+
+    /**
+     * @return true if the GCM message extras carry a forecast delta
+     */
+    public static boolean isDelta(Bundle extras) {
+        return extras.containsKey(EXTRA_FORECAST) && extras.containsKey(EXTRA_LOCATION);
+    }
+
+    /**
+     * Builds the extras of a delta message, as the server sends them.
+     *
+     * @param forecast the changed days, encoded by ForecastCodec
+     */
+    public static Bundle toExtras(String location, byte[] forecast) {
+        Bundle extras = new Bundle();
+        extras.putString(EXTRA_LOCATION, location);
+        extras.putString(EXTRA_FORECAST, Base64.encodeToString(forecast, Base64.NO_WRAP));
+        return extras;
+    }
+
+    /**
+     * Applies a delta to the provider, then refreshes the forecast snapshot and the widgets.
+     * Does disk I/O, so it must not be called from the main thread.
+     *
+     * @return the number of days updated
+     * @see #apply(Context, List)
+     */
+    public static int apply(Context context, Bundle extras) {
+        return apply(context, Collections.singletonList(extras));
+    }
+
+    /**
+     * Applies several deltas, in order, as a single batch, then refreshes the forecast snapshot
+     * and the widgets once.  Deltas for any location but the preferred one are ignored, as are
+     * malformed ones.  Does disk I/O, so it must not be called from the main thread.
+     *
+     * @return the number of days updated
+     */
+    public static int apply(Context context, List<Bundle> deltas) {
+        String location = SettingsSnapshot.get(context).location;
+        long locationId = -1;
+        int days = 0;
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (Bundle extras : deltas) {
+            if (!location.equals(extras.getString(EXTRA_LOCATION))) {
+                Log.d(LOG_TAG, "Ignoring delta for " + extras.getString(EXTRA_LOCATION));
+                continue;
+            }
+            Forecast forecast;
+            try {
+                forecast = new Forecast(
+                        Base64.decode(extras.getString(EXTRA_FORECAST), Base64.DEFAULT));
+            } catch (IllegalArgumentException e) {
+                Log.e(LOG_TAG, "Malformed delta", e);
+                continue;
+            }
+            if (locationId < 0) {
+                locationId = findLocationId(context, location);
+                if (locationId < 0) {
+                    return 0;
+                }
+            }
+            addOperations(locationId, forecast, operations);
+            days += forecast.size();
+        }
+        if (operations.isEmpty()) {
+            return 0;
+        }
+
+        int updated = 0;
+        try {
+            ContentProviderResult[] results = context.getContentResolver().applyBatch(
+                    WeatherContract.CONTENT_AUTHORITY, operations);
+            for (ContentProviderResult result : results) {
+                updated += result.count;
+            }
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "Error applying delta", e);
+            return 0;
+        }
+        Log.d(LOG_TAG, "Applied " + deltas.size() + " deltas for " + location + ": " + updated
+                + " of " + days + " days");
+
+        if (updated > 0) {
+            ForecastSnapshot.publish(context);
+            WidgetUpdateScheduler.requestUpdate(context, WidgetUpdateScheduler.REASON_DATA);
+        }
+        return updated;
+    }
+
+    private static void addOperations(long locationId, Forecast forecast,
+                                      ArrayList<ContentProviderOperation> operations) {
+        for (int day = 0; day < forecast.size(); day++) {
+            operations.add(ContentProviderOperation
+                    .newUpdate(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withSelection(DAY_SELECTION, new String[]{
+                            Long.toString(locationId),
+                            Long.toString(WeatherContract.normalizeDate(forecast.getDate(day)))})
+                    .withValue(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, forecast.getHigh(day))
+                    .withValue(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, forecast.getLow(day))
+                    .withValue(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                            forecast.getWeatherId(day))
+                    .build());
+        }
+    }
+
+    private static long findLocationId(Context context, String location) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{location},
+                null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
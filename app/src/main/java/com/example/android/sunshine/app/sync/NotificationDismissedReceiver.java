@@ -0,0 +1,26 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Records when the user swipes away the weather notification, so a late icon download doesn't
+ * post it again.  The download only lives as long as the process, so neither does the record.
+ */
+public class NotificationDismissedReceiver extends BroadcastReceiver {
+
+    private static volatile long sDismissedAt;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        sDismissedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if the notification was dismissed at or after the given time
+     */
+    static boolean wasDismissedSince(long time) {
+        return sDismissedAt >= time;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Notification large icons, rendered once per condition at the size the notification shows
+ * them and kept as small PNGs in the cache directory.
+ * <p/>
+ * Local art is decoded with subsampling instead of at full size.  Remote art pack icons are
+ * downloaded on a background thread, never the caller's, and delivered to a {@link Callback}
+ * when they are ready.
+ */
+class NotificationIconCache {
+    private static final String LOG_TAG = NotificationIconCache.class.getSimpleName();
+
+    /**
+     * Receives a downloaded icon on a background thread.
+     */
+    interface Callback {
+        void onIconReady(Bitmap icon);
+    }
+
+    private static final String DIRECTORY = "notification_icons";
+
+    // Every condition for a couple of art packs.
+    private static final int MAX_FILES = 24;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+    private final File mDirectory;
+    private final int mWidth;
+    private final int mHeight;
+
+    NotificationIconCache(Context context, int width, int height) {
+        mContext = context.getApplicationContext();
+        mDirectory = new File(mContext.getCacheDir(), DIRECTORY);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory,
+                Integer.toHexString(key.hashCode()) + "_" + mWidth + "x" + mHeight + ".png");
+    }
+
+    /**
+     * @return the cached icon for the art url, or null if it hasn't been downloaded yet
+     */
+    Bitmap getRemoteIcon(String artUrl) {
+        return artUrl == null ? null : read(fileFor(artUrl));
+    }
+
+    /**
+     * @return the local art resource at the icon size, rendered on the first call
+     */
+    Bitmap getLocalIcon(int artResourceId) {
+        File file = fileFor("res:" + artResourceId);
+        Bitmap icon = read(file);
+        if (icon == null) {
+            icon = decodeResource(artResourceId);
+            if (icon != null) {
+                write(file, icon);
+            }
+        }
+        return icon;
+    }
+
+    /**
+     * Downloads the icon for the art url in the background and caches it.  The callback is only
+     * called if the download succeeds.
+     */
+    void fetchRemoteIcon(final String artUrl, final Callback callback) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = fileFor(artUrl);
+                Bitmap icon = read(file);
+                if (icon == null) {
+                    try {
+                        icon = Glide.with(mContext)
+                                .load(artUrl)
+                                .asBitmap()
+                                .fitCenter()
+                                .into(mWidth, mHeight).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+                        return;
+                    }
+                    write(file, icon);
+                }
+                callback.onIconReady(icon);
+            }
+        });
+    }
+
+    private Bitmap read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        // Trimming goes by modification time
+        file.setLastModified(System.currentTimeMillis());
+        return BitmapFactory.decodeFile(file.getPath());
+    }
+
+    private Bitmap decodeResource(int resId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mContext.getResources(), resId, options);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= mWidth
+                && options.outHeight / (options.inSampleSize * 2) >= mHeight) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeResource(mContext.getResources(), resId, options);
+        if (decoded == null
+                || (decoded.getWidth() == mWidth && decoded.getHeight() == mHeight)) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, mWidth, mHeight, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    private synchronized void write(File file, Bitmap icon) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                icon.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error caching icon " + file, e);
+            file.delete();
+            return;
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null || files.length <= MAX_FILES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+}
@@ -18,7 +18,6 @@ import android.content.SyncResult;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -29,19 +28,15 @@ import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
 import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.ForecastSnapshot;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsSnapshot;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
+import com.example.android.sunshine.app.widget.WidgetUpdateScheduler;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -55,9 +50,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.UUID;
 import java.util.Vector;
-import java.util.concurrent.ExecutionException;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
@@ -69,21 +62,10 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL / 3;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
+    // How long after posting the notification a downloaded icon may still be swapped in.
+    private static final long ICON_SWAP_WINDOW_MS = 1000 * 60;
 
 
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[]{
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
-
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID, LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
     public @interface LocationStatus {
@@ -96,34 +78,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
-    private static final String WEATHER_INFO_PATH = "/weather-info";
-    private static final String KEY_ID = "id";
-    private static final String KEY_HIGH = "high";
-    private static final String KEY_LOW = "low";
-    private static final String KEY_WEATHER_ID = "weatherId";
-    private GoogleApiClient mGoogleApiClient;
-    private boolean isGoogleApiReady = false;
+    private final WearableSender mWearableSender;
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
-
-        if (mGoogleApiClient == null) {
-            mGoogleApiClient = new GoogleApiClient.Builder(context)
-                    .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
-                        @Override
-                        public void onConnected(Bundle bundle) {
-                            isGoogleApiReady = true;
-                        }
-
-                        @Override
-                        public void onConnectionSuspended(int i) {
-                            Log.d(LOG_TAG, "onConnectionSuspended: "+i);
-                        }
-                    })
-                    .addApi(Wearable.API)
-                    .build();
-            mGoogleApiClient.connect();
-        }
+        mWearableSender = new WearableSender(context);
     }
 
     @Override
@@ -364,10 +323,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
 
-                if (i == 0) {
-                    sendToWearable(high, low, weatherId);
-                }
-
                 cVVector.add(weatherValues);
             }
 
@@ -377,15 +332,22 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 ContentValues[] cvArray = new ContentValues[cVVector.size()];
                 cVVector.toArray(cvArray);
                 getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
+                PreferenceManager.getDefaultSharedPreferences(getContext()).edit()
+                        .putLong(getContext().getString(R.string.pref_last_sync),
+                                System.currentTimeMillis())
+                        .apply();
 
                 // delete old data so we don't build up an endless history
                 getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
                         new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
 
+                // Read the new forecast once; every surface updated below renders from it.
+                ForecastSnapshot.publish(getContext());
                 updateWidgets();
                 updateMuzei();
                 notifyWeather();
+                sendToWearable();
             }
             Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
             setLocationStatus(getContext(), LOCATION_STATUS_OK);
@@ -397,43 +359,15 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private void sendToWearable(double high, double low, int weatherId) {
+    private void sendToWearable() {
         Log.d(LOG_TAG, "Sending Weather data");
-
-        if (!isGoogleApiReady) {
-            return;
+        if (!mWearableSender.send()) {
+            Log.w(LOG_TAG, "Weather data did not reach the wearable API");
         }
-
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_INFO_PATH);
-
-        putDataMapRequest.getDataMap().putString(KEY_ID, UUID.randomUUID().toString());
-        putDataMapRequest.getDataMap().putString(KEY_HIGH, Utility.formatTemperature(getContext(), high));
-        putDataMapRequest.getDataMap().putString(KEY_LOW, Utility.formatTemperature(getContext(), low));
-        putDataMapRequest.getDataMap().putInt(KEY_WEATHER_ID, weatherId);
-
-        PutDataRequest request = putDataMapRequest.asPutDataRequest();
-
-        Log.d(LOG_TAG, "High:" + high + ", Low:" + low + ", Condition ID: " + weatherId);
-
-        Wearable.DataApi.putDataItem(mGoogleApiClient, request)
-                .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                    @Override
-                    public void onResult(DataApi.DataItemResult dataItemResult) {
-                        if (!dataItemResult.getStatus().isSuccess()) {
-                            Log.d(LOG_TAG, "Failed to send weather data");
-                        } else {
-                            Log.d(LOG_TAG, "Successfully sent weather data");
-                        }
-                    }
-                });
     }
 
     private void updateWidgets() {
-        Context context = getContext();
-        // Setting the package ensures that only components in our app will receive the broadcast
-        Intent dataUpdatedIntent = new Intent(ACTION_DATA_UPDATED)
-                .setPackage(context.getPackageName());
-        context.sendBroadcast(dataUpdatedIntent);
+        WidgetUpdateScheduler.requestUpdate(getContext(), WidgetUpdateScheduler.REASON_DATA);
     }
 
     private void updateMuzei() {
@@ -449,30 +383,24 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private void notifyWeather() {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-        boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
-                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+        SettingsSnapshot settings = SettingsSnapshot.get(context);
 
-        if (displayNotifications) {
+        if (settings.notificationsEnabled) {
 
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
             String lastNotificationKey = context.getString(R.string.pref_last_notification);
             long lastSync = prefs.getLong(lastNotificationKey, 0);
 
             if (System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS) {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
-                String locationQuery = Utility.getPreferredLocation(context);
+                // Today's weather comes from the snapshot the sync just published.
+                ForecastSnapshot forecast = ForecastSnapshot.get(context);
 
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
+                if (forecast.startsToday()) {
+                    int weatherId = forecast.getWeatherId(0);
+                    double high = forecast.getHigh(0);
+                    double low = forecast.getLow(0);
+                    String desc = forecast.getDescription(0);
 
                     int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
                     Resources resources = context.getResources();
@@ -490,18 +418,15 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                             ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
                             : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
 
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
-                        largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
+                    // Use the art pack icon if it was downloaded before, otherwise the local art
+                    // for now.  Sync never waits for a download.
+                    NotificationIconCache iconCache =
+                            new NotificationIconCache(context, largeIconWidth, largeIconHeight);
+                    boolean remoteArt = !settings.usingLocalGraphics && artUrl != null;
+                    Bitmap largeIcon = remoteArt ? iconCache.getRemoteIcon(artUrl) : null;
+                    boolean iconPending = remoteArt && largeIcon == null;
+                    if (largeIcon == null) {
+                        largeIcon = iconCache.getLocalIcon(artResourceId);
                     }
                     String title = context.getString(R.string.app_name);
 
@@ -513,13 +438,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
                     // NotificationCompatBuilder is a very convenient way to build backward-compatible
                     // notifications.  Just throw in some data.
-                    NotificationCompat.Builder mBuilder =
+                    final NotificationCompat.Builder mBuilder =
                             new NotificationCompat.Builder(getContext())
                                     .setColor(resources.getColor(R.color.primary_light))
                                     .setSmallIcon(iconId)
                                     .setLargeIcon(largeIcon)
                                     .setContentTitle(title)
-                                    .setContentText(contentText);
+                                    .setContentText(contentText)
+                                    .setOnlyAlertOnce(true);
 
                     // Make something interesting happen when the user clicks on the notification.
                     // In this case, opening the app is sufficient.
@@ -537,18 +463,37 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                                     PendingIntent.FLAG_UPDATE_CURRENT
                             );
                     mBuilder.setContentIntent(resultPendingIntent);
+                    mBuilder.setDeleteIntent(PendingIntent.getBroadcast(context, 0,
+                            new Intent(context, NotificationDismissedReceiver.class), 0));
 
-                    NotificationManager mNotificationManager =
+                    final NotificationManager mNotificationManager =
                             (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
                     // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+                    final long postedAt = System.currentTimeMillis();
                     mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
 
+                    if (iconPending) {
+                        // Swap in the art pack icon once it has been downloaded, unless posting
+                        // again would bring back a notification the user has dealt with.
+                        iconCache.fetchRemoteIcon(artUrl, new NotificationIconCache.Callback() {
+                            @Override
+                            public void onIconReady(Bitmap icon) {
+                                if (NotificationDismissedReceiver.wasDismissedSince(postedAt)
+                                        || System.currentTimeMillis() - postedAt
+                                        > ICON_SWAP_WINDOW_MS) {
+                                    return;
+                                }
+                                mNotificationManager.notify(WEATHER_NOTIFICATION_ID,
+                                        mBuilder.setLargeIcon(icon).build());
+                            }
+                        });
+                    }
+
                     //refreshing last sync
                     SharedPreferences.Editor editor = prefs.edit();
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
                     editor.commit();
                 }
-                cursor.close();
             }
         }
     }
@@ -622,6 +567,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
+    /**
+     * @return when the forecast was last downloaded, in milliseconds since the epoch, or 0 if never
+     */
+    public static long getLastSyncTime(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getLong(context.getString(R.string.pref_last_sync), 0);
+    }
+
     /**
      * Helper method to have the sync adapter sync immediately
      *
@@ -707,5 +660,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         SharedPreferences.Editor spe = sp.edit();
         spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
         spe.commit();
+        SettingsSnapshot.refresh(c);
     }
 }
\ No newline at end of file
@@ -1,16 +1,31 @@
 package com.example.android.sunshine.app.sync;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.util.Log;
 
+import com.example.android.sunshine.shared.WearableContract;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.WearableListenerService;
 
+/**
+ * Answers weather requests from the watch.
+ * <p/>
+ * When the provider holds a forecast downloaded within the last sync interval, the watch gets it
+ * straight away; only older data makes us sync over the network.
+ */
 public class WearWeatherService extends WearableListenerService {
 
     private static final String TAG = WearWeatherService.class.getSimpleName();
 
-    private static final String WEATHER_REQ_PATH = "/weather-req";
+    // Data younger than the regular sync interval is as fresh as the periodic sync keeps it anyway.
+    private static final long MAX_DATA_AGE_MS = SunshineSyncAdapter.SYNC_INTERVAL * 1000L;
+
+    // Counters for how requests were answered, kept in their own private preferences file.
+    private static final String PREFS_NAME = "wear_requests";
+    private static final String PREF_SERVED_FROM_CACHE = "served_from_cache";
+    private static final String PREF_SERVED_FROM_NETWORK = "served_from_network";
 
     @Override
     public void onDataChanged(DataEventBuffer dataEvents) {
@@ -18,10 +33,30 @@ public class WearWeatherService extends WearableListenerService {
             if (dataEvent.getType() == DataEvent.TYPE_CHANGED) {
                 String path = dataEvent.getDataItem().getUri().getPath();
                 Log.d(TAG, path);
-                if (path.equals(WEATHER_REQ_PATH)) {
-                    SunshineSyncAdapter.syncImmediately(this);
+                if (path.equals(WearableContract.WEATHER_REQ_PATH)) {
+                    answerWeatherRequest();
                 }
             }
         }
     }
-}
\ No newline at end of file
+
+    private void answerWeatherRequest() {
+        // The watch may have lost its copy, so send the weather even if unchanged.  If that fails,
+        // fall back to a sync, which sends the forecast again when it is done.
+        long age = System.currentTimeMillis() - SunshineSyncAdapter.getLastSyncTime(this);
+        if (age < MAX_DATA_AGE_MS && new WearableSender(this).resend()) {
+            count(PREF_SERVED_FROM_CACHE);
+        } else {
+            SunshineSyncAdapter.syncImmediately(this);
+            count(PREF_SERVED_FROM_NETWORK);
+        }
+    }
+
+    private void count(String key) {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putLong(key, prefs.getLong(key, 0) + 1).apply();
+        Log.d(TAG, "Watch requests served from cache: "
+                + prefs.getLong(PREF_SERVED_FROM_CACHE, 0) + ", from network: "
+                + prefs.getLong(PREF_SERVED_FROM_NETWORK, 0));
+    }
+}
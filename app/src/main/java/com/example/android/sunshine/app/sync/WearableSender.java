@@ -0,0 +1,213 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.ForecastSnapshot;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.shared.ForecastCodec;
+import com.example.android.sunshine.shared.WearableContract;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Asset;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the forecast to the watch.
+ * <p/>
+ * The forecast is read from the current {@link ForecastSnapshot} and sent as a single
+ * {@link Asset} in the compact {@link ForecastCodec} encoding, which the watch reads lazily.
+ * The data item carries a hash of its content instead of a random id, and is only put when that
+ * hash changed, so unchanged weather doesn't cross Bluetooth or wake the watch.  When it didn't
+ * change, a small freshness ping tells the watch that its copy is still current.
+ * <p/>
+ * Blocks while connecting, so it must be used from a background thread.  The client is only
+ * connected for the duration of each {@link #send()}.
+ */
+public class WearableSender {
+    private static final String LOG_TAG = WearableSender.class.getSimpleName();
+
+    // A week is as much as the watch has room to show.
+    private static final int FORECAST_DAYS = 7;
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    // Bookkeeping lives in its own private preferences file.
+    private static final String PREFS_NAME = "wearable";
+    private static final String PREF_LAST_HASH = "last_hash";
+    // Set while a resend the watch asked for hasn't gone through, so the next send forces it.
+    private static final String PREF_RESEND_PENDING = "resend_pending";
+    private static final String PREF_STATS_DAY = "stats_day";
+    private static final String PREF_BYTES_TODAY = "bytes_today";
+
+    private final Context mContext;
+    private final GoogleApiClient mGoogleApiClient;
+
+    public WearableSender(Context context) {
+        mContext = context.getApplicationContext();
+        mGoogleApiClient = new GoogleApiClient.Builder(mContext)
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    private boolean connect() {
+        ConnectionResult result =
+                mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.d(LOG_TAG, "Could not connect to the wearable API: " + result);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the upcoming days of the current forecast in the watch's encoding.
+     *
+     * @return the encoded forecast, or null if there is no forecast for the preferred location
+     */
+    byte[] readForecast() {
+        ForecastSnapshot snapshot = ForecastSnapshot.get(mContext);
+        int count = Math.min(snapshot.size(), FORECAST_DAYS);
+        if (count == 0) {
+            return null;
+        }
+        long[] dates = new long[count];
+        double[] highs = new double[count];
+        double[] lows = new double[count];
+        int[] weatherIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = snapshot.getDate(i);
+            highs[i] = snapshot.getHigh(i);
+            lows[i] = snapshot.getLow(i);
+            weatherIds[i] = snapshot.getWeatherId(i);
+        }
+        return ForecastCodec.encode(SettingsSnapshot.get(mContext).isMetric, count, dates, highs,
+                lows, weatherIds);
+    }
+
+    /**
+     * Sends the forecast for the preferred location unless the watch already has exactly this
+     * forecast, in which case only a freshness ping is sent.
+     *
+     * @return false if there is no forecast for the preferred location, or if it couldn't be
+     * delivered to the wearable API
+     */
+    public boolean send() {
+        return send(false);
+    }
+
+    /**
+     * Sends the forecast for the preferred location even if the watch should already have it.
+     * Used when the watch asks for the weather, since it may have lost its copy.  The data item
+     * gets a random id, otherwise an unchanged forecast would be a no-op for the data layer and
+     * the watch would never hear back.
+     *
+     * @return false if there is no forecast for the preferred location, or if it couldn't be
+     * delivered to the wearable API
+     */
+    public boolean resend() {
+        mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().putBoolean(PREF_RESEND_PENDING, true).apply();
+        return send(true);
+    }
+
+    private boolean send(boolean force) {
+        byte[] forecast = readForecast();
+        if (forecast == null) {
+            Log.d(LOG_TAG, "No forecast to send");
+            return false;
+        }
+        if (!connect()) {
+            return false;
+        }
+        try {
+            return send(forecast, force);
+        } finally {
+            mGoogleApiClient.disconnect();
+        }
+    }
+
+    private boolean send(byte[] forecast, boolean force) {
+        int hash = Arrays.hashCode(forecast);
+
+        SharedPreferences prefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        force |= prefs.getBoolean(PREF_RESEND_PENDING, false);
+        if (!force && prefs.contains(PREF_LAST_HASH) && prefs.getInt(PREF_LAST_HASH, 0) == hash) {
+            Log.d(LOG_TAG, "Weather unchanged, sending freshness ping");
+            return sendFreshnessPing();
+        }
+
+        PutDataMapRequest putDataMapRequest =
+                PutDataMapRequest.create(WearableContract.WEATHER_INFO_PATH);
+        putDataMapRequest.getDataMap().putInt(WearableContract.KEY_HASH, hash);
+        putDataMapRequest.getDataMap().putAsset(WearableContract.KEY_FORECAST,
+                Asset.createFromBytes(forecast));
+        if (force) {
+            putDataMapRequest.getDataMap().putString(WearableContract.KEY_ID,
+                    UUID.randomUUID().toString());
+        }
+        PutDataRequest request = putDataMapRequest.asPutDataRequest();
+
+        DataApi.DataItemResult result =
+                Wearable.DataApi.putDataItem(mGoogleApiClient, request).await();
+        if (!result.getStatus().isSuccess()) {
+            Log.d(LOG_TAG, "Failed to send weather data");
+            return false;
+        }
+        Log.d(LOG_TAG, "Successfully sent weather data");
+        prefs.edit().putInt(PREF_LAST_HASH, hash).remove(PREF_RESEND_PENDING).apply();
+        countBytes(prefs, forecast.length
+                + (request.getData() != null ? request.getData().length : 0));
+        return true;
+    }
+
+    /**
+     * Tells every connected watch that the weather it has is current as of now.  The payload is
+     * just the time, in milliseconds since the epoch.
+     *
+     * @return false if the message couldn't be sent to any of the connected watches
+     */
+    private boolean sendFreshnessPing() {
+        byte[] payload = ByteBuffer.allocate(8).putLong(System.currentTimeMillis()).array();
+        NodeApi.GetConnectedNodesResult nodes =
+                Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).await();
+        int sent = 0;
+        boolean failed = false;
+        for (Node node : nodes.getNodes()) {
+            if (Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(),
+                    WearableContract.WEATHER_FRESH_PATH, payload).await().getStatus().isSuccess()) {
+                sent += payload.length;
+            } else {
+                failed = true;
+            }
+        }
+        countBytes(mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), sent);
+        return sent > 0 || !failed;
+    }
+
+    /**
+     * Adds to the bytes sent to the watch today, and logs the total.
+     */
+    private void countBytes(SharedPreferences prefs, int bytes) {
+        Time time = new Time();
+        time.setToNow();
+        int today = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        long total = prefs.getInt(PREF_STATS_DAY, -1) == today
+                ? prefs.getLong(PREF_BYTES_TODAY, 0) + bytes
+                : bytes;
+        prefs.edit().putInt(PREF_STATS_DAY, today).putLong(PREF_BYTES_TODAY, total).apply();
+        Log.d(LOG_TAG, "Sent " + bytes + " bytes to the watch, " + total + " today");
+    }
+}
@@ -21,34 +21,53 @@ import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
+import com.example.android.sunshine.app.ForecastSnapshot;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsSnapshot;
 import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+import java.util.Arrays;
 
 /**
  * IntentService which handles updating all Today widgets with the latest data
+ * <p/>
+ * Widgets are grouped by the layout their width calls for.  Each layout is rendered once and
+ * sent to all of its widgets in a single update, so the cost of a refresh depends on the number
+ * of distinct sizes rather than the number of widgets.
  */
 public class TodayWidgetIntentService extends IntentService {
-    private static final String[] FORECAST_COLUMNS = {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    private static final String LOG_TAG = TodayWidgetIntentService.class.getSimpleName();
+
+    // Sent by TodayWidgetProvider with the ids of deleted widgets in EXTRA_APPWIDGET_IDS.
+    static final String ACTION_WIDGETS_DELETED =
+            "com.example.android.sunshine.app.widget.ACTION_WIDGETS_DELETED";
+
+    // The forecast and settings the widgets were last rendered from.
+    private static long sRenderedVersion = -1;
+
+    // Layouts from the narrowest to the widest, indexed by the LAYOUT_ constants.
+    private static final int LAYOUT_SMALL = 0;
+    private static final int LAYOUT_DEFAULT = 1;
+    private static final int LAYOUT_LARGE = 2;
+    private static final int[] LAYOUTS = {
+            R.layout.widget_today_small,
+            R.layout.widget_today,
+            R.layout.widget_today_large
     };
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
-    private static final int INDEX_MAX_TEMP = 2;
-    private static final int INDEX_MIN_TEMP = 3;
+
+    // Index into LAYOUTS for every widget id whose size is known, so its options don't have to
+    // be read again until it is resized.
+    private static final SparseIntArray sLayoutByWidget = new SparseIntArray();
 
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
@@ -56,50 +75,73 @@ public class TodayWidgetIntentService extends IntentService {
 
     @Override
     protected void onHandleIntent(Intent intent) {
+        if (ACTION_WIDGETS_DELETED.equals(intent.getAction())) {
+            // Forget the layouts of deleted widgets; there is nothing to render.
+            int[] deletedIds = intent.getIntArrayExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS);
+            if (deletedIds != null) {
+                for (int appWidgetId : deletedIds) {
+                    sLayoutByWidget.delete(appWidgetId);
+                }
+            }
+            return;
+        }
+
         // Retrieve all of the Today widget ids: these are the widgets we need to update
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
         int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
                 TodayWidgetProvider.class));
 
-        // Get today's data from the ContentProvider
-        String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (data == null) {
+        // Get today's data from the snapshot the sync adapter published
+        ForecastSnapshot forecast = ForecastSnapshot.get(this);
+        if (forecast.isEmpty()) {
             return;
         }
-        if (!data.moveToFirst()) {
-            data.close();
+        // New data only needs rendering if it differs from what the widgets already show; any
+        // other update, such as a new or resized widget, is always rendered.
+        long renderVersion = forecast.getRenderVersion(SettingsSnapshot.get(this));
+        if (SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction())
+                && renderVersion == sRenderedVersion) {
+            Log.d(LOG_TAG, "Forecast unchanged, skipping widget update");
             return;
         }
+        sRenderedVersion = renderVersion;
 
-        // Extract the weather data from the Cursor
-        int weatherId = data.getInt(INDEX_WEATHER_ID);
+        int weatherId = forecast.getWeatherId(0);
         int weatherArtResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-        String description = data.getString(INDEX_SHORT_DESC);
-        double maxTemp = data.getDouble(INDEX_MAX_TEMP);
-        double minTemp = data.getDouble(INDEX_MIN_TEMP);
-        String formattedMaxTemperature = Utility.formatTemperature(this, maxTemp);
-        String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
-        data.close();
-
-        // Perform this loop procedure for each Today widget
-        for (int appWidgetId : appWidgetIds) {
-            // Find the correct layout based on the widget's width
-            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
-            int layoutId;
-            if (widgetWidth >= largeWidth) {
-                layoutId = R.layout.widget_today_large;
-            } else if (widgetWidth >= defaultWidth) {
-                layoutId = R.layout.widget_today;
-            } else {
-                layoutId = R.layout.widget_today_small;
+        String description = forecast.getDescription(0);
+        String formattedMaxTemperature = Utility.formatTemperature(this, forecast.getHigh(0));
+        String formattedMinTemperature = Utility.formatTemperature(this, forecast.getLow(0));
+
+        // A resized widget may need a different layout
+        if (intent.hasExtra(AppWidgetManager.EXTRA_APPWIDGET_ID)) {
+            sLayoutByWidget.delete(intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID,
+                    AppWidgetManager.INVALID_APPWIDGET_ID));
+        }
+
+        // Group the widgets by layout
+        int[] layouts = new int[appWidgetIds.length];
+        int[] bucketSizes = new int[LAYOUTS.length];
+        for (int i = 0; i < appWidgetIds.length; i++) {
+            layouts[i] = getLayout(appWidgetManager, appWidgetIds[i]);
+            bucketSizes[layouts[i]]++;
+        }
+
+        // Create an Intent to launch MainActivity
+        Intent launchIntent = new Intent(this, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+
+        // Render each layout in use once, for all of its widgets
+        for (int layout = 0; layout < LAYOUTS.length; layout++) {
+            if (bucketSizes[layout] == 0) {
+                continue;
+            }
+            int[] bucket = new int[bucketSizes[layout]];
+            for (int i = 0, j = 0; i < appWidgetIds.length; i++) {
+                if (layouts[i] == layout) {
+                    bucket[j++] = appWidgetIds[i];
+                }
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+            RemoteViews views = new RemoteViews(getPackageName(), LAYOUTS[layout]);
 
             // Add the data to the RemoteViews
             views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
@@ -110,15 +152,35 @@ public class TodayWidgetIntentService extends IntentService {
             views.setTextViewText(R.id.widget_description, description);
             views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
             views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
-
-            // Create an Intent to launch MainActivity
-            Intent launchIntent = new Intent(this, MainActivity.class);
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
             views.setOnClickPendingIntent(R.id.widget, pendingIntent);
 
-            // Tell the AppWidgetManager to perform an update on the current app widget
-            appWidgetManager.updateAppWidget(appWidgetId, views);
+            // Tell the AppWidgetManager to perform an update on all widgets of this size
+            appWidgetManager.updateAppWidget(bucket, views);
+            Log.d(LOG_TAG, "Updated widgets " + Arrays.toString(bucket));
+        }
+    }
+
+    /**
+     * @return the index into {@link #LAYOUTS} of the layout that fits the widget's width
+     */
+    private int getLayout(AppWidgetManager appWidgetManager, int appWidgetId) {
+        int layout = sLayoutByWidget.get(appWidgetId, -1);
+        if (layout >= 0) {
+            return layout;
+        }
+        // Find the correct layout based on the widget's width
+        int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        if (widgetWidth >= largeWidth) {
+            layout = LAYOUT_LARGE;
+        } else if (widgetWidth >= defaultWidth) {
+            layout = LAYOUT_DEFAULT;
+        } else {
+            layout = LAYOUT_SMALL;
         }
+        sLayoutByWidget.put(appWidgetId, layout);
+        return layout;
     }
 
     private int getWidgetWidth(AppWidgetManager appWidgetManager, int appWidgetId) {
@@ -40,14 +40,23 @@ public class TodayWidgetProvider extends AppWidgetProvider {
     @Override
     public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager,
                                           int appWidgetId, Bundle newOptions) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        context.startService(new Intent(context, TodayWidgetIntentService.class)
+                .putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId));
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        context.startService(new Intent(context, TodayWidgetIntentService.class)
+                .setAction(TodayWidgetIntentService.ACTION_WIDGETS_DELETED)
+                .putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds));
     }
 
     @Override
     public void onReceive(@NonNull Context context, @NonNull Intent intent) {
         super.onReceive(context, intent);
         if (SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction())) {
-            context.startService(new Intent(context, TodayWidgetIntentService.class));
+            context.startService(new Intent(context, TodayWidgetIntentService.class)
+                    .setAction(SunshineSyncAdapter.ACTION_DATA_UPDATED));
         }
     }
 }
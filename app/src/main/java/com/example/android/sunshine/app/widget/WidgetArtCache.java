@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.R;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Remote weather art for widget list items, decoded at the list icon size.
+ * <p/>
+ * Every bitmap set on a {@link android.widget.RemoteViews} is copied through the Binder, so the
+ * art is scaled to exactly the pixels the icon shows.  Bitmaps are keyed by art url, which the
+ * art pack resolves per weather category, so all rows and widgets showing the same condition
+ * share one bitmap.  The cache is bounded by bytes.
+ */
+final class WidgetArtCache {
+    private static final String LOG_TAG = WidgetArtCache.class.getSimpleName();
+
+    // Every category at 40dp on an xxxhdpi screen takes about 800KB.
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sCache = new LruCache<String, Bitmap>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(String url, Bitmap bitmap) {
+            // Bitmap.getByteCount() needs API 12.
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    };
+
+    private WidgetArtCache() {
+    }
+
+    /**
+     * Returns the art at the url, scaled to the list icon size.  Downloads and decodes it on the
+     * calling thread if it isn't cached, so this must not be called from the main thread.
+     *
+     * @return the art, or null if it couldn't be loaded
+     */
+    static Bitmap get(Context context, String url) {
+        if (url == null) {
+            return null;
+        }
+        Bitmap art = sCache.get(url);
+        if (art != null) {
+            return art;
+        }
+        int size = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+        try {
+            art = Glide.with(context.getApplicationContext())
+                    .load(url)
+                    .asBitmap()
+                    .fitCenter()
+                    .into(size, size).get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Not cached, so the next refresh tries again.
+            Log.e(LOG_TAG, "Error retrieving widget art from " + url, e);
+            return null;
+        }
+        if (art != null) {
+            sCache.put(url, art);
+        }
+        return art;
+    }
+}
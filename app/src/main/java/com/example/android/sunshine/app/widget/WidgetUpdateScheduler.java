@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * Decides when the widgets are told to refresh.
+ * <p/>
+ * Requests are collected for a short while, so a burst of them (a sync followed by a units
+ * change, say) ends in a single refresh.  While the screen is off nobody can see the widgets, so
+ * the refresh waits until it comes back on.  Either way the widgets then receive one
+ * {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} broadcast.
+ * <p/>
+ * A deferred refresh is also recorded in preferences.  If the process dies before the screen
+ * comes back on, {@link WidgetReplayReceiver} replays it when the user next unlocks the device.
+ */
+public final class WidgetUpdateScheduler {
+    private static final String LOG_TAG = WidgetUpdateScheduler.class.getSimpleName();
+
+    /** The forecast in the provider changed. */
+    public static final int REASON_DATA = 1;
+    /** A setting the widgets display, such as units or the art pack, changed. */
+    public static final int REASON_SETTINGS = 2;
+
+    private static final long DEBOUNCE_MS = 1000;
+
+    // The deferred refresh flag lives in its own private preferences file.
+    private static final String PREFS_NAME = "widget_updates";
+    private static final String PREF_DIRTY = "dirty";
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    // Everything below is only touched on the main thread.
+
+    private static Context sAppContext;
+    // REASON_ flags of the requests since the last refresh, 0 if none is pending.
+    private static int sPendingReasons;
+    private static boolean sWaitingForScreen;
+
+    // Instrumentation: requests merged into a pending refresh, refreshes put off until the screen
+    // came on, and refreshes actually sent.
+    private static int sSuppressed;
+    private static int sDeferred;
+    private static int sExecuted;
+
+    private static final Runnable sRefresh = new Runnable() {
+        @Override
+        public void run() {
+            refreshOrWait();
+        }
+    };
+
+    private static final BroadcastReceiver sScreenOnReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            sAppContext.unregisterReceiver(this);
+            sWaitingForScreen = false;
+            sHandler.removeCallbacks(sRefresh);
+            refresh();
+        }
+    };
+
+    private WidgetUpdateScheduler() {
+    }
+
+    /**
+     * Asks for the widgets to be refreshed soon.  May be called from any thread.
+     *
+     * @param reason one of the REASON_ constants
+     */
+    public static void requestUpdate(Context context, final int reason) {
+        final Context appContext = context.getApplicationContext();
+        sHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                sAppContext = appContext;
+                if (sPendingReasons != 0) {
+                    sSuppressed++;
+                } else {
+                    sHandler.postDelayed(sRefresh, DEBOUNCE_MS);
+                }
+                sPendingReasons |= reason;
+            }
+        });
+    }
+
+    /**
+     * Requests the refresh a previous process deferred and didn't live to send, if any.
+     */
+    static void replayDeferred(Context context) {
+        if (context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getBoolean(PREF_DIRTY, false)) {
+            Log.d(LOG_TAG, "Replaying a deferred refresh");
+            requestUpdate(context, REASON_DATA);
+        }
+    }
+
+    private static void setDirty(Context context, boolean dirty) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().putBoolean(PREF_DIRTY, dirty).apply();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void refreshOrWait() {
+        if (sWaitingForScreen) {
+            return;
+        }
+        PowerManager powerManager =
+                (PowerManager) sAppContext.getSystemService(Context.POWER_SERVICE);
+        // isScreenOn() is deprecated in favour of isInteractive(), which needs API 20.
+        if (!powerManager.isScreenOn()) {
+            sWaitingForScreen = true;
+            sDeferred++;
+            sHandler.removeCallbacks(sRefresh);
+            setDirty(sAppContext, true);
+            sAppContext.registerReceiver(sScreenOnReceiver,
+                    new IntentFilter(Intent.ACTION_SCREEN_ON));
+            return;
+        }
+        refresh();
+    }
+
+    private static void refresh() {
+        int reasons = sPendingReasons;
+        sPendingReasons = 0;
+        sExecuted++;
+        setDirty(sAppContext, false);
+        // Setting the package ensures that only components in our app will receive the broadcast
+        sAppContext.sendBroadcast(new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setPackage(sAppContext.getPackageName()));
+        Log.d(LOG_TAG, "Refreshed widgets for reasons " + reasons + "; executed " + sExecuted
+                + ", suppressed " + sSuppressed + ", deferred " + sDeferred);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * A multi-day forecast read straight from its {@link ForecastCodec} encoding.
+ * <p/>
+ * Nothing is decoded up front: records are fixed-width, so each accessor reads just the bytes it
+ * needs.  Reading a whole forecast allocates nothing beyond this object.
+ */
+public final class Forecast {
+
+    private final byte[] mData;
+    private final int mCount;
+
+    /**
+     * @param data a forecast encoded by {@link ForecastCodec#encode}
+     * @throws IllegalArgumentException if the data isn't a forecast this version can read
+     */
+    public Forecast(byte[] data) {
+        if (data == null || data.length < ForecastCodec.HEADER_SIZE
+                || data[0] != ForecastCodec.VERSION) {
+            throw new IllegalArgumentException("Not a version " + ForecastCodec.VERSION + " forecast");
+        }
+        mCount = data[2] & 0xff;
+        if (data.length < ForecastCodec.HEADER_SIZE + mCount * ForecastCodec.RECORD_SIZE) {
+            throw new IllegalArgumentException("Truncated forecast");
+        }
+        mData = data;
+    }
+
+    /**
+     * @return the encoded bytes this forecast reads from; don't modify them
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return true if the user displays temperatures in Celsius
+     */
+    public boolean isMetric() {
+        return (mData[1] & ForecastCodec.FLAG_METRIC) != 0;
+    }
+
+    private int offset(int day) {
+        if (day < 0 || day >= mCount) {
+            throw new IndexOutOfBoundsException("Day " + day + " of " + mCount);
+        }
+        return ForecastCodec.HEADER_SIZE + day * ForecastCodec.RECORD_SIZE;
+    }
+
+    /**
+     * @return the date of the day, in milliseconds since the epoch
+     */
+    public long getDate(int day) {
+        offset(day);
+        int days = 0;
+        for (int i = 1; i <= day; i++) {
+            days += mData[ForecastCodec.HEADER_SIZE + i * ForecastCodec.RECORD_SIZE] & 0xff;
+        }
+        return ForecastCodec.getLong(mData, 3) + days * ForecastCodec.DAY_IN_MILLIS;
+    }
+
+    /**
+     * @return the high in Celsius, to a tenth of a degree
+     */
+    public double getHigh(int day) {
+        return ForecastCodec.getShort(mData, offset(day) + 1) / 10.0;
+    }
+
+    /**
+     * @return the low in Celsius, to a tenth of a degree
+     */
+    public double getLow(int day) {
+        return ForecastCodec.getShort(mData, offset(day) + 3) / 10.0;
+    }
+
+    public int getWeatherId(int day) {
+        return ForecastCodec.getShort(mData, offset(day) + 5);
+    }
+
+    /**
+     * @param now a time in milliseconds since the epoch
+     * @return the first day that hasn't ended at the given time, or -1 if all of them have
+     */
+    public int findDay(long now) {
+        long date = ForecastCodec.getLong(mData, 3);
+        for (int i = 0; i < mCount; i++) {
+            date += (mData[ForecastCodec.HEADER_SIZE + i * ForecastCodec.RECORD_SIZE] & 0xff)
+                    * ForecastCodec.DAY_IN_MILLIS;
+            if (date + ForecastCodec.DAY_IN_MILLIS > now) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Compact binary encoding of a multi-day forecast, sent from the phone to the watch.
+ * <p/>
+ * All values are big-endian.  The header is:
+ * <pre>
+ *   byte  format version ({@link #VERSION})
+ *   byte  flags ({@link #FLAG_METRIC})
+ *   byte  number of days
+ *   long  date of the first day, in milliseconds since the epoch
+ * </pre>
+ * followed by one fixed-width record per day:
+ * <pre>
+ *   byte  days since the previous record (0 for the first)
+ *   short high, in tenths of a degree Celsius
+ *   short low, in tenths of a degree Celsius
+ *   short OpenWeatherMap condition id
+ * </pre>
+ * A two week forecast takes {@code 11 + 14 * 7 = 109} bytes.  See {@link Forecast} for reading it.
+ */
+public final class ForecastCodec {
+
+    public static final int VERSION = 1;
+
+    /** Set when the user displays temperatures in Celsius. */
+    public static final int FLAG_METRIC = 1;
+
+    public static final int HEADER_SIZE = 11;
+    public static final int RECORD_SIZE = 7;
+
+    /** The most days that fit the one-byte count. */
+    public static final int MAX_DAYS = 255;
+
+    static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+
+    private ForecastCodec() {
+    }
+
+    /**
+     * Encodes a forecast.  All arrays must be at least {@code count} long and dates ascending.
+     *
+     * @param metric whether temperatures are displayed in Celsius
+     * @param count number of days to encode, at most {@link #MAX_DAYS}
+     * @param dates day dates, in milliseconds since the epoch
+     * @param highs highs in Celsius
+     * @param lows lows in Celsius
+     * @param weatherIds condition ids
+     * @return the encoded forecast
+     */
+    public static byte[] encode(boolean metric, int count, long[] dates, double[] highs,
+                                double[] lows, int[] weatherIds) {
+        if (count < 0 || count > MAX_DAYS) {
+            throw new IllegalArgumentException("Can't encode " + count + " days");
+        }
+        byte[] out = new byte[HEADER_SIZE + count * RECORD_SIZE];
+        out[0] = (byte) VERSION;
+        out[1] = (byte) (metric ? FLAG_METRIC : 0);
+        out[2] = (byte) count;
+        putLong(out, 3, count > 0 ? dates[0] : 0);
+
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            long delta = i == 0 ? 0 : Math.round((dates[i] - dates[i - 1]) / (double) DAY_IN_MILLIS);
+            if (delta < 0 || delta > 255) {
+                throw new IllegalArgumentException("Dates must be ascending and close together");
+            }
+            out[offset] = (byte) delta;
+            putShort(out, offset + 1, toTenths(highs[i]));
+            putShort(out, offset + 3, toTenths(lows[i]));
+            putShort(out, offset + 5, weatherIds[i]);
+            offset += RECORD_SIZE;
+        }
+        return out;
+    }
+
+    private static int toTenths(double celsius) {
+        long tenths = Math.round(celsius * 10);
+        return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    private static void putShort(byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >> 8);
+        out[offset + 1] = (byte) value;
+    }
+
+    private static void putLong(byte[] out, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            out[offset + i] = (byte) value;
+            value >>= 8;
+        }
+    }
+
+    static int getShort(byte[] in, int offset) {
+        return (short) (((in[offset] & 0xff) << 8) | (in[offset + 1] & 0xff));
+    }
+
+    static long getLong(byte[] in, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (in[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
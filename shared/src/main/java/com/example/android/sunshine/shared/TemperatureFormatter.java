@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.Locale;
+
+/**
+ * Formats temperatures stored in Celsius for display, without allocating.
+ * <p/>
+ * Displayed temperatures are whole degrees in a narrow range, so every string in that range is
+ * formatted once, up front, for a given format, locale and unit system.  Values outside the range
+ * fall back to {@link String#format(Locale, String, Object...)}.
+ */
+public final class TemperatureFormatter {
+
+    /** Lowest temperature, in display units, served from the precomputed table. */
+    public static final int MIN_TABLE_TEMPERATURE = -100;
+    /** Highest temperature, in display units, served from the precomputed table. */
+    public static final int MAX_TABLE_TEMPERATURE = 150;
+
+    private final String mFormat;
+    private final Locale mLocale;
+    private final boolean mMetric;
+    private final String[] mTable;
+
+    /**
+     * @param format format with a single floating point placeholder, e.g. "%1.0f&deg;"
+     * @param locale locale used to format the digits
+     * @param metric true to display Celsius, false to display Fahrenheit
+     */
+    public TemperatureFormatter(String format, Locale locale, boolean metric) {
+        mFormat = format;
+        mLocale = locale;
+        mMetric = metric;
+        mTable = new String[MAX_TABLE_TEMPERATURE - MIN_TABLE_TEMPERATURE + 1];
+        for (int i = 0; i < mTable.length; i++) {
+            mTable[i] = String.format(locale, format, (double) (MIN_TABLE_TEMPERATURE + i));
+        }
+    }
+
+    /**
+     * @return true if this formatter was built for the given locale and unit system
+     */
+    public boolean matches(Locale locale, boolean metric) {
+        return mMetric == metric && mLocale.equals(locale);
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * Converts a Celsius temperature to the display unit system, still unrounded.
+     */
+    public double toDisplayUnits(double celsius) {
+        return mMetric ? celsius : (celsius * 1.8) + 32;
+    }
+
+    /**
+     * Formats a temperature stored in Celsius.  Rounding matches "%1.0f", which rounds halves
+     * away from zero, except that values just below zero read "0" rather than "-0".
+     *
+     * @param celsius the temperature in Celsius
+     * @return the formatted temperature in this formatter's unit system
+     */
+    public String format(double celsius) {
+        double temperature = toDisplayUnits(celsius);
+        double rounded = temperature < 0
+                ? -Math.floor(-temperature + 0.5)
+                : Math.floor(temperature + 0.5);
+        if (rounded >= MIN_TABLE_TEMPERATURE && rounded <= MAX_TABLE_TEMPERATURE) {
+            return mTable[(int) rounded - MIN_TABLE_TEMPERATURE];
+        }
+        return String.format(mLocale, mFormat, temperature);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Paths and keys of the data items and messages exchanged between the phone and the watch.
+ */
+public final class WearableContract {
+
+    /** Data item the watch puts to ask the phone for the weather. */
+    public static final String WEATHER_REQ_PATH = "/weather-req";
+    /**
+     * Random id that makes every request a change.  The phone also puts one on the forecast when
+     * it resends an unchanged forecast on request.
+     */
+    public static final String KEY_ID = "id";
+
+    /** Data item holding the forecast, put by the phone. */
+    public static final String WEATHER_INFO_PATH = "/weather-info";
+    /** Hash of the encoded forecast, so identical forecasts are recognized. */
+    public static final String KEY_HASH = "hash";
+    /** Asset with the forecast, encoded by {@link ForecastCodec}. */
+    public static final String KEY_FORECAST = "forecast";
+
+    /**
+     * Message the phone sends instead of the forecast when it didn't change.  The payload is the
+     * time the forecast was confirmed current, as 8 big-endian bytes of milliseconds since the
+     * epoch.
+     */
+    public static final String WEATHER_FRESH_PATH = "/weather-fresh";
+
+    private WearableContract() {
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Precomputed registry of the OpenWeatherMap condition codes used by Sunshine.
+ * <p/>
+ * Every condition id is resolved once, when the class is loaded, into a dense table indexed by
+ * the id itself. Lookups are then a bounds check and an array read, so they are safe to call
+ * from list binding and drawing code. Both the phone app and the watch face compile against this
+ * class, and each keeps its own resource tables indexed by {@link #getCategory(int)}.
+ * <p/>
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    // Artwork categories.  These index the per-module icon, art and url tables, so they must
+    // stay dense and start at zero.
+    public static final int CATEGORY_UNKNOWN = -1;
+    public static final int CATEGORY_STORM = 0;
+    public static final int CATEGORY_LIGHT_RAIN = 1;
+    public static final int CATEGORY_RAIN = 2;
+    public static final int CATEGORY_SNOW = 3;
+    public static final int CATEGORY_FOG = 4;
+    public static final int CATEGORY_CLEAR = 5;
+    public static final int CATEGORY_LIGHT_CLOUDS = 6;
+    public static final int CATEGORY_CLOUDS = 7;
+    public static final int CATEGORY_COUNT = 8;
+
+    // Highest condition id we know about, plus one.  Anything at or above it is unknown.
+    public static final int MAX_CONDITION_ID = 1000;
+
+    /**
+     * Key used by the remote art packs, e.g. "light_rain" in ".../art_light_rain.png".
+     * Indexed by category.
+     */
+    private static final String[] URL_KEYS = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    /**
+     * Full size photographs used for wallpapers.  Indexed by category.
+     */
+    private static final String[] IMAGE_URLS = {
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+
+    // Tornadoes share the storm artwork, but have their own photograph.
+    private static final String IMAGE_URL_DUST_STORM =
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+
+    private static final byte[] CATEGORY_BY_ID = new byte[MAX_CONDITION_ID];
+
+    static {
+        Arrays.fill(CATEGORY_BY_ID, (byte) CATEGORY_UNKNOWN);
+        fill(200, 232, CATEGORY_STORM);
+        fill(300, 321, CATEGORY_LIGHT_RAIN);
+        fill(500, 504, CATEGORY_RAIN);
+        fill(511, 511, CATEGORY_SNOW);
+        fill(520, 531, CATEGORY_RAIN);
+        fill(600, 622, CATEGORY_SNOW);
+        fill(701, 761, CATEGORY_FOG);
+        fill(781, 781, CATEGORY_STORM);
+        fill(800, 800, CATEGORY_CLEAR);
+        fill(801, 801, CATEGORY_LIGHT_CLOUDS);
+        fill(802, 804, CATEGORY_CLOUDS);
+    }
+
+    private static void fill(int fromId, int toId, int category) {
+        Arrays.fill(CATEGORY_BY_ID, fromId, toId + 1, (byte) category);
+    }
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the artwork category for the condition, or {@link #CATEGORY_UNKNOWN}
+     */
+    public static int getCategory(int weatherId) {
+        if (weatherId < 0 || weatherId >= MAX_CONDITION_ID) {
+            return CATEGORY_UNKNOWN;
+        }
+        return CATEGORY_BY_ID[weatherId];
+    }
+
+    /**
+     * @param category one of the CATEGORY_ constants
+     * @return the art pack key for the category, e.g. "light_rain".  null if unknown.
+     */
+    public static String getUrlKey(int category) {
+        return category == CATEGORY_UNKNOWN ? null : URL_KEYS[category];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return A string URL to an appropriate photograph or null if no mapping is found
+     */
+    public static String getImageUrl(int weatherId) {
+        if (weatherId == 781) {
+            return IMAGE_URL_DUST_STORM;
+        }
+        int category = getCategory(weatherId);
+        return category == CATEGORY_UNKNOWN ? null : IMAGE_URLS[category];
+    }
+
+    /**
+     * Resolves an art pack url format, e.g. "https://.../art_%s.png", for every category at once.
+     *
+     * @param artUrlFormat format string with a single %s placeholder for the url key
+     * @return urls indexed by category
+     */
+    public static String[] resolveArtUrls(String artUrlFormat) {
+        String[] urls = new String[CATEGORY_COUNT];
+        for (int category = 0; category < CATEGORY_COUNT; category++) {
+            urls[category] = String.format(Locale.US, artUrlFormat, URL_KEYS[category]);
+        }
+        return urls;
+    }
+}
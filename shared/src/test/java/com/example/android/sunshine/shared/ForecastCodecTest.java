@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastCodecTest {
+
+    private static final long DAY = ForecastCodec.DAY_IN_MILLIS;
+    private static final long FIRST_DAY = 1419033600000L;  // December 20th, 2014
+
+    private static byte[] encodeWeek() {
+        long[] dates = new long[7];
+        double[] highs = new double[7];
+        double[] lows = new double[7];
+        int[] weatherIds = new int[7];
+        for (int i = 0; i < 7; i++) {
+            dates[i] = FIRST_DAY + i * DAY;
+            highs[i] = 20.5 + i;
+            lows[i] = -3.5 - i;
+            weatherIds[i] = 800 + i;
+        }
+        return ForecastCodec.encode(true, 7, dates, highs, lows, weatherIds);
+    }
+
+    @Test
+    public void roundTrips() {
+        byte[] data = encodeWeek();
+        assertEquals(ForecastCodec.HEADER_SIZE + 7 * ForecastCodec.RECORD_SIZE, data.length);
+
+        Forecast forecast = new Forecast(data);
+        assertEquals(7, forecast.size());
+        assertTrue(forecast.isMetric());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(FIRST_DAY + i * DAY, forecast.getDate(i));
+            assertEquals(20.5 + i, forecast.getHigh(i), 0.05);
+            assertEquals(-3.5 - i, forecast.getLow(i), 0.05);
+            assertEquals(800 + i, forecast.getWeatherId(i));
+        }
+    }
+
+    @Test
+    public void encodesImperialFlag() {
+        byte[] data = ForecastCodec.encode(false, 1, new long[]{FIRST_DAY}, new double[]{1},
+                new double[]{0}, new int[]{500});
+        assertFalse(new Forecast(data).isMetric());
+    }
+
+    @Test
+    public void findsTheCurrentDay() {
+        Forecast forecast = new Forecast(encodeWeek());
+        assertEquals(0, forecast.findDay(FIRST_DAY - DAY));
+        assertEquals(0, forecast.findDay(FIRST_DAY + DAY / 2));
+        assertEquals(3, forecast.findDay(FIRST_DAY + 3 * DAY + 1));
+        assertEquals(-1, forecast.findDay(FIRST_DAY + 7 * DAY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedData() {
+        byte[] data = encodeWeek();
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        new Forecast(truncated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDescendingDates() {
+        ForecastCodec.encode(true, 2, new long[]{FIRST_DAY, FIRST_DAY - DAY},
+                new double[2], new double[2], new int[2]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsDaysOutOfRange() {
+        new Forecast(encodeWeek()).getHigh(7);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TemperatureFormatterTest {
+
+    private static final String FORMAT = "%1.0f\u00b0";
+
+    @Test
+    public void matchesStringFormat() {
+        TemperatureFormatter formatter = new TemperatureFormatter(FORMAT, Locale.US, true);
+        for (double celsius = -60; celsius <= 60; celsius += 0.25) {
+            if (celsius < 0 && celsius > -0.5) {
+                continue;  // see readsZeroForSmallNegatives
+            }
+            assertEquals(String.format(Locale.US, FORMAT, celsius), formatter.format(celsius));
+        }
+    }
+
+    @Test
+    public void readsZeroForSmallNegatives() {
+        TemperatureFormatter formatter = new TemperatureFormatter(FORMAT, Locale.US, true);
+        assertEquals("0\u00b0", formatter.format(-0.25));
+    }
+
+    @Test
+    public void convertsToFahrenheit() {
+        TemperatureFormatter formatter = new TemperatureFormatter(FORMAT, Locale.US, false);
+        assertEquals("32\u00b0", formatter.format(0));
+        assertEquals("212\u00b0", formatter.format(100));
+        assertEquals(-40, formatter.toDisplayUnits(-40), 1e-9);
+    }
+
+    @Test
+    public void servesTableValuesWithoutFormatting() {
+        TemperatureFormatter formatter = new TemperatureFormatter(FORMAT, Locale.US, true);
+        assertSame(formatter.format(21.2), formatter.format(20.8));
+    }
+
+    @Test
+    public void fallsBackOutsideTheTable() {
+        TemperatureFormatter formatter = new TemperatureFormatter(FORMAT, Locale.US, true);
+        assertEquals("1000\u00b0", formatter.format(1000));
+    }
+
+    @Test
+    public void matchesLocaleAndUnits() {
+        TemperatureFormatter formatter = new TemperatureFormatter(FORMAT, Locale.US, true);
+        assertTrue(formatter.matches(Locale.US, true));
+        assertFalse(formatter.matches(Locale.US, false));
+        assertFalse(formatter.matches(Locale.FRANCE, true));
+    }
+}
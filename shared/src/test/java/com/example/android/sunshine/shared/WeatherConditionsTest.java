@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WeatherConditionsTest {
+
+    @Test
+    public void categoriesCoverTheKnownRanges() {
+        assertEquals(WeatherConditions.CATEGORY_STORM, WeatherConditions.getCategory(200));
+        assertEquals(WeatherConditions.CATEGORY_STORM, WeatherConditions.getCategory(781));
+        assertEquals(WeatherConditions.CATEGORY_LIGHT_RAIN, WeatherConditions.getCategory(300));
+        assertEquals(WeatherConditions.CATEGORY_RAIN, WeatherConditions.getCategory(502));
+        assertEquals(WeatherConditions.CATEGORY_SNOW, WeatherConditions.getCategory(511));
+        assertEquals(WeatherConditions.CATEGORY_SNOW, WeatherConditions.getCategory(601));
+        assertEquals(WeatherConditions.CATEGORY_FOG, WeatherConditions.getCategory(741));
+        assertEquals(WeatherConditions.CATEGORY_CLEAR, WeatherConditions.getCategory(800));
+    }
+
+    @Test
+    public void unknownIdsHaveNoCategory() {
+        assertEquals(WeatherConditions.CATEGORY_UNKNOWN, WeatherConditions.getCategory(-1));
+        assertEquals(WeatherConditions.CATEGORY_UNKNOWN, WeatherConditions.getCategory(0));
+        assertEquals(WeatherConditions.CATEGORY_UNKNOWN, WeatherConditions.getCategory(
+                WeatherConditions.MAX_CONDITION_ID));
+        assertNull(WeatherConditions.getUrlKey(WeatherConditions.CATEGORY_UNKNOWN));
+        assertNull(WeatherConditions.getImageUrl(0));
+    }
+
+    @Test
+    public void artUrlsAreResolvedPerCategory() {
+        String[] urls = WeatherConditions.resolveArtUrls("https://example.com/art_%s.png");
+        assertEquals(WeatherConditions.CATEGORY_COUNT, urls.length);
+        assertEquals("https://example.com/art_light_rain.png",
+                urls[WeatherConditions.CATEGORY_LIGHT_RAIN]);
+        assertTrue(WeatherConditions.getImageUrl(781).contains("dust"));
+    }
+}
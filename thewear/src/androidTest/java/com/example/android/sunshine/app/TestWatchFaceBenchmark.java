@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+    Measures frame time and draw calls per frame for the watch face, with and without the
+    offscreen layer, in interactive and ambient mode.  Results are written to the log.
+ */
+public class TestWatchFaceBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWatchFaceBenchmark.class.getSimpleName();
+
+    private static final int SIZE = 320;
+    private static final int FRAMES = 300;
+
+    /**
+     * Counts the draw calls the renderer makes.
+     */
+    static class CountingCanvas extends Canvas {
+        int drawCalls;
+
+        CountingCanvas(Bitmap bitmap) {
+            super(bitmap);
+        }
+
+        @Override
+        public void drawColor(int color) {
+            drawCalls++;
+            super.drawColor(color);
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            drawCalls++;
+            super.drawRect(left, top, right, bottom, paint);
+        }
+
+        @Override
+        public void drawRect(Rect r, Paint paint) {
+            drawCalls++;
+            super.drawRect(r, paint);
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+            drawCalls++;
+            super.drawLine(startX, startY, stopX, stopY, paint);
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, Paint paint) {
+            drawCalls++;
+            super.drawText(text, x, y, paint);
+        }
+
+        @Override
+        public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+            drawCalls++;
+            super.drawText(text, index, count, x, y, paint);
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+            drawCalls++;
+            super.drawBitmap(bitmap, left, top, paint);
+        }
+    }
+
+    private WatchFaceRenderer mRenderer;
+    private CountingCanvas mCanvas;
+    private Rect mBounds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRenderer = new WatchFaceRenderer(mContext.getResources());
+        mRenderer.setSurfaceSize(SIZE, SIZE);
+        mRenderer.setWeather("25°", "16°");
+        mRenderer.setWeatherIcons(Bitmap.createBitmap(60, 60, Bitmap.Config.ARGB_8888),
+                Bitmap.createBitmap(60, 60, Bitmap.Config.ARGB_8888));
+        mCanvas = new CountingCanvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        mBounds = new Rect(0, 0, SIZE, SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mRenderer.release();
+        super.tearDown();
+    }
+
+    public void testInteractive() {
+        compare(false);
+    }
+
+    public void testAmbient() {
+        compare(true);
+    }
+
+    private void compare(boolean ambient) {
+        mRenderer.setAmbient(ambient);
+        String mode = ambient ? "ambient" : "interactive";
+
+        mRenderer.setLayerCacheEnabled(false);
+        long[] direct = run();
+        mRenderer.setLayerCacheEnabled(true);
+        long[] layered = run();
+
+        Log.i(LOG_TAG, mode + ": direct " + (direct[0] / FRAMES) + "ns/frame, "
+                + direct[1] + " draw calls/frame; layered " + (layered[0] / FRAMES)
+                + "ns/frame, " + layered[1] + " draw calls/frame");
+        assertTrue("Error: The layer doesn't save draw calls in " + mode + " mode",
+                layered[1] < direct[1]);
+    }
+
+    /**
+     * @return total nanoseconds for all frames and draw calls in the last frame
+     */
+    private long[] run() {
+        // Let the first frame build the layer and format the date.
+        mRenderer.draw(mCanvas, mBounds);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            mCanvas.drawCalls = 0;
+            mRenderer.draw(mCanvas, mBounds);
+        }
+        return new long[]{System.nanoTime() - start, mCanvas.drawCalls};
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+/*
+    Makes sure that drawing a steady-state watch face frame doesn't allocate, in both interactive
+    and ambient mode.
+ */
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    private static final int SIZE = 320;
+    private static final int FRAMES = 60;
+
+    private WatchFaceRenderer mRenderer;
+    private Canvas mCanvas;
+    private Rect mBounds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRenderer = new WatchFaceRenderer(mContext.getResources());
+        mRenderer.setSurfaceSize(SIZE, SIZE);
+        mRenderer.setWeather("25°", "16°");
+        mRenderer.setWeatherIcons(Bitmap.createBitmap(60, 60, Bitmap.Config.ARGB_8888),
+                Bitmap.createBitmap(60, 60, Bitmap.Config.ARGB_8888));
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        mBounds = new Rect(0, 0, SIZE, SIZE);
+    }
+
+    public void testInteractiveFrameDoesNotAllocate() {
+        mRenderer.setAmbient(false);
+        assertFramesDoNotAllocate("interactive");
+    }
+
+    public void testAmbientFrameDoesNotAllocate() {
+        mRenderer.setAmbient(true);
+        assertFramesDoNotAllocate("ambient");
+    }
+
+    private void assertFramesDoNotAllocate(String mode) {
+        // Warm up untimed: the first frame formats the date line and builds the layer, and
+        // everything after it is steady state.
+        mRenderer.draw(mCanvas, mBounds);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < FRAMES; i++) {
+            mRenderer.draw(mCanvas, mBounds);
+        }
+        Debug.stopAllocCounting();
+        assertEquals("Error: Drawing a " + mode + " frame allocated objects",
+                0, Debug.getThreadAllocCount());
+    }
+}
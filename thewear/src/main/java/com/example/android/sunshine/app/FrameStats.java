@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of watch face draw durations, plus the number of frames drawn per hour.  The
+ * totals are logged and reset once an hour.  Recording a frame doesn't allocate.
+ */
+class FrameStats {
+    private static final String LOG_TAG = FrameStats.class.getSimpleName();
+
+    // Upper bounds of the histogram buckets, in microseconds; the last bucket is open-ended.
+    private static final long[] BUCKET_LIMITS_US = {500, 1000, 2000, 4000, 8000, 16000};
+
+    private final int[] mBuckets = new int[BUCKET_LIMITS_US.length + 1];
+    private int mFrames;
+    private long mPeriodStart = SystemClock.elapsedRealtime();
+
+    /**
+     * Records one frame.
+     *
+     * @param durationNanos how long drawing the frame took
+     */
+    void record(long durationNanos) {
+        long micros = durationNanos / 1000;
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS_US.length && micros >= BUCKET_LIMITS_US[bucket]) {
+            bucket++;
+        }
+        mBuckets[bucket]++;
+        mFrames++;
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - mPeriodStart >= DateUtils.HOUR_IN_MILLIS) {
+            log(now);
+            Arrays.fill(mBuckets, 0);
+            mFrames = 0;
+            mPeriodStart = now;
+        }
+    }
+
+    private void log(long now) {
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < mBuckets.length; i++) {
+            if (i < BUCKET_LIMITS_US.length) {
+                histogram.append('<').append(BUCKET_LIMITS_US[i]);
+            } else {
+                histogram.append(">=").append(BUCKET_LIMITS_US[i - 1]);
+            }
+            histogram.append("us:")
+                    .append(mBuckets[i])
+                    .append(' ');
+        }
+        long hours = Math.max(1, (now - mPeriodStart) / DateUtils.HOUR_IN_MILLIS);
+        Log.d(LOG_TAG, (mFrames / hours) + " frames/hour, draw times " + histogram);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.LruCache;
+
+import com.example.android.sunshine.shared.WeatherConditions;
+
+/**
+ * Color and ambient (grayscale) weather icons, prepared at the size they are drawn at.
+ * <p/>
+ * Icons are decoded, scaled and desaturated once per weather category on a background thread and
+ * kept in a cache bounded by bytes, so a weather update only swaps a reference.
+ */
+class IconAtlas {
+
+    /**
+     * Receives the icons for a requested weather id on the main thread.
+     */
+    interface Callback {
+        void onIconsReady(Bitmap icon, Bitmap ambientIcon);
+    }
+
+    // ARGB_8888
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final Resources mResources;
+    private final int mIconSize;
+    private final Callback mCallback;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mThread;
+    private final Handler mBackgroundHandler;
+
+    // Both variants of a category, [0] color and [1] ambient.
+    private final LruCache<Integer, Bitmap[]> mCache;
+
+    // The category of the latest request; answers to older requests are dropped.
+    private int mRequestedCategory = WeatherConditions.CATEGORY_UNKNOWN;
+
+    IconAtlas(Resources resources, Callback callback) {
+        mResources = resources;
+        mIconSize = resources.getDimensionPixelSize(R.dimen.digital_weather_icon_size);
+        // Enough for every category in both variants at this screen's icon size.
+        int cacheBytes = WeatherConditions.CATEGORY_COUNT * 2 * mIconSize * mIconSize
+                * BYTES_PER_PIXEL;
+        mCache = new LruCache<Integer, Bitmap[]>(cacheBytes) {
+            @Override
+            protected int sizeOf(Integer category, Bitmap[] icons) {
+                return icons[0].getByteCount() + icons[1].getByteCount();
+            }
+        };
+        mCallback = callback;
+        mThread = new HandlerThread("IconAtlas");
+        mThread.start();
+        mBackgroundHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Delivers the icons for the weather id to the callback, right away if they are ready.  Unknown
+     * ids deliver null icons.
+     */
+    void request(int weatherId) {
+        final int category = weatherId > 0
+                ? WeatherConditions.getCategory(weatherId)
+                : WeatherConditions.CATEGORY_UNKNOWN;
+        mRequestedCategory = category;
+        if (category == WeatherConditions.CATEGORY_UNKNOWN) {
+            mCallback.onIconsReady(null, null);
+            return;
+        }
+        Bitmap[] icons = mCache.get(category);
+        if (icons != null) {
+            mCallback.onIconsReady(icons[0], icons[1]);
+            return;
+        }
+        mBackgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap[] icons = mCache.get(category);
+                if (icons == null) {
+                    icons = prepare(category);
+                    mCache.put(category, icons);
+                }
+                final Bitmap[] ready = icons;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (category == mRequestedCategory) {
+                            mCallback.onIconsReady(ready[0], ready[1]);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private Bitmap[] prepare(int category) {
+        int resId = MyWatchFace.getArtResourceForCategory(category);
+
+        // Only decode as many pixels as needed; the art is much larger than the icon.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, resId, options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= mIconSize
+                && options.outHeight / (sampleSize * 2) >= mIconSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeResource(mResources, resId, options);
+
+        Bitmap icon = Bitmap.createScaledBitmap(decoded, mIconSize, mIconSize, true);
+        if (icon != decoded) {
+            decoded.recycle();
+        }
+
+        Bitmap ambientIcon = Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888);
+        Paint grayPaint = new Paint();
+        ColorMatrix colorMatrix = new ColorMatrix();
+        colorMatrix.setSaturation(0);
+        grayPaint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+        new Canvas(ambientIcon).drawBitmap(icon, 0, 0, grayPaint);
+
+        return new Bitmap[]{icon, ambientIcon};
+    }
+
+    /**
+     * Stops the background thread.  Pending requests are dropped.
+     */
+    void release() {
+        mRequestedCategory = WeatherConditions.CATEGORY_UNKNOWN;
+        mThread.quit();
+    }
+}
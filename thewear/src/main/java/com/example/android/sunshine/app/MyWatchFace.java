@@ -20,73 +20,70 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.preference.PreferenceManager;
-import android.support.annotation.ColorRes;
-import android.support.annotation.DimenRes;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.text.format.Time;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
+import com.example.android.sunshine.shared.Forecast;
+import com.example.android.sunshine.shared.TemperatureFormatter;
+import com.example.android.sunshine.shared.WearableContract;
+import com.example.android.sunshine.shared.WeatherConditions;
+import com.google.android.gms.wearable.Asset;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.DataItem;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
+import java.util.Locale;
 import java.util.TimeZone;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face showing hours and minutes. On devices with low-bit ambient mode, the text is
+ * drawn without anti-aliasing in ambient mode.
+ * <p/>
+ * Frames are only drawn when what is on screen can change: at the minute boundary, when weather
+ * arrives, and when the peek card, mode, visibility or time zone changes.
  */
 public class MyWatchFace extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+    private static final String LOG_TAG = MyWatchFace.class.getSimpleName();
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second since seconds are
-     * displayed in interactive mode.
+     * Update rate in milliseconds for interactive mode. Only minutes are displayed, so we update
+     * on every minute boundary.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.MINUTES.toMillis(1);
 
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
 
-    private static final String WEATHER_REQ_PATH = "/weather-req";
-    private static final String WEATHER_INFO_PATH = "/weather-info";
-    private static final String KEY_ID = "id";
-    private static final String KEY_HIGH = "high";
-    private static final String KEY_LOW = "low";
-    private static final String KEY_WEATHER_ID = "weatherId";
+    // Number of days after today shown below the temperatures.
+    private static final int FORECAST_STRIP_DAYS = 3;
+
+    // Art resources indexed by WeatherConditions category.
+    private static final int[] ART_RESOURCES = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds
+    };
 
     /**
      * Helper method to provide the art resource id according to the weather condition id returned
@@ -96,32 +93,15 @@ public class MyWatchFace extends CanvasWatchFaceService {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        }
-        return -1;
+        return getArtResourceForCategory(WeatherConditions.getCategory(weatherId));
+    }
+
+    /**
+     * @param category a WeatherConditions category
+     * @return resource id for the category's icon. -1 for CATEGORY_UNKNOWN.
+     */
+    static int getArtResourceForCategory(int category) {
+        return category == WeatherConditions.CATEGORY_UNKNOWN ? -1 : ART_RESOURCES[category];
     }
 
     @Override
@@ -150,80 +130,36 @@ public class MyWatchFace extends CanvasWatchFaceService {
     }
 
     private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener {
-        private static final String TAG = "ENGINE";
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
-        Paint mBackgroundPaint, mBlackPaint;
-        Paint mTextPaintClock, mTextPaintDate, mTextPaintTempHigh, mTextPaintTempLow;
         boolean mAmbient;
-        Time mTime;
+        WatchFaceRenderer mRenderer;
+        IconAtlas mIconAtlas;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                mRenderer.setTimeZone(intent.getStringExtra("time-zone"));
+                // Today may be a different day of the forecast in the new time zone.
+                reapplyForecast();
+                invalidate();
+                // The minute boundary may have moved.
+                updateTimer();
             }
         };
 
-        float mCenterX;
-        float mYOffset;
-
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
-        private int mWidth;
-
-        private String mWeatherHigh;
-        private String mWeatherLow;
-        private Bitmap mWeatherIcon;
-        private Bitmap mGrayWeatherIcon;
-        private Rect mCardBounds = new Rect();
 
-        private SharedPreferences mPref;
+        private WeatherStore mWeatherStore;
+        // When the day the weather is shown for ends, in milliseconds.  0 if none is shown.
+        private long mForecastDayEnd;
 
-        GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(MyWatchFace.this)
-                .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
-                    @Override
-                    public void onConnected(Bundle bundle) {
-                        Log.d(TAG, "onConnected: " + bundle);
-                        Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
-
-                        requestWeatherInfo();
-                    }
-
-                    @Override
-                    public void onConnectionSuspended(int cause) {
-                        Log.d(TAG, "onConnectionSuspended: " + cause);
-                    }
-                })
-                .addOnConnectionFailedListener(new GoogleApiClient.OnConnectionFailedListener() {
-                    @Override
-                    public void onConnectionFailed(ConnectionResult connectionResult) {
-                        Log.d(TAG, "onConnectionFailed: " + connectionResult);
-                    }
-                })
-                .addApi(Wearable.API)
-                .build();
-
-        private void requestWeatherInfo() {
-            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_REQ_PATH);
-            putDataMapRequest.getDataMap().putString(KEY_ID, UUID.randomUUID().toString());
-            PutDataRequest request = putDataMapRequest.asPutDataRequest();
-
-            Wearable.DataApi.putDataItem(mGoogleApiClient, request)
-                    .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                        @Override
-                        public void onResult(DataApi.DataItemResult dataItemResult) {
-                            if (!dataItemResult.getStatus().isSuccess()) {
-                                Log.d(TAG, "Failed request weather data from companion device");
-                            } else {
-                                Log.d(TAG, "Successfully request for weather data");
-                            }
-                        }
-                    });
-        }
+        private WearableConnection mConnection;
+        private TemperatureFormatter mTemperatureFormatter;
+        private final FrameStats mFrameStats = new FrameStats();
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -234,58 +170,49 @@ public class MyWatchFace extends CanvasWatchFaceService {
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
                     .build());
-            Resources resources = MyWatchFace.this.getResources();
-            mYOffset = resources.getDimension(R.dimen.digital_y_offset);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
-            mBlackPaint = new Paint();
-            mBlackPaint.setColor(Color.BLACK);
-
-            mTextPaintClock = createTextPaint(R.color.digital_text_white, R.dimen.digital_text_size_clock);
-            mTextPaintDate = createTextPaint(R.color.digital_text_semi_white, R.dimen.digital_text_size_date);
-            mTextPaintTempHigh = createTextPaint(R.color.digital_text_white, R.dimen.digital_text_size_temp);
-            mTextPaintTempLow = createTextPaint(R.color.digital_text_semi_white, R.dimen.digital_text_size_temp);
-
-            mTime = new Time();
-
-            //get from pref first
-            mPref = PreferenceManager.getDefaultSharedPreferences(MyWatchFace.this);
-            mWeatherLow = mPref.getString(KEY_LOW, null);
-            mWeatherHigh = mPref.getString(KEY_HIGH, null);
-            mWeatherIcon = getWeatherIconBitmap(mPref.getInt(KEY_WEATHER_ID, 0));
-        }
-
-        private Paint createTextPaint(@ColorRes int textColor, @DimenRes int resTextSize) {
-            Paint paint = new Paint();
-            setTextPaintColor(paint, textColor);
-            paint.setAntiAlias(true);
-            paint.setTextAlign(Paint.Align.CENTER);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            float textSize = MyWatchFace.this.getResources().getDimension(resTextSize);
-            paint.setTextSize(textSize);
-            return paint;
-
-        }
-
-        private void setTextPaintColor(Paint paint, @ColorRes int textColor) {
-            if (!mAmbient) {
-                paint.setColor(MyWatchFace.this.getResources().getColor(textColor));
-            } else {
-                paint.setColor(Color.WHITE);
+            mRenderer = new WatchFaceRenderer(MyWatchFace.this.getResources());
+            mIconAtlas = new IconAtlas(MyWatchFace.this.getResources(), new IconAtlas.Callback() {
+                @Override
+                public void onIconsReady(Bitmap icon, Bitmap ambientIcon) {
+                    mRenderer.setWeatherIcons(icon, ambientIcon);
+                    invalidate();
+                }
+            });
+
+            // Show the last known weather until the phone sends an update.
+            mWeatherStore = new WeatherStore(MyWatchFace.this);
+            mWeatherStore.load();
+            mRenderer.setWeather(mWeatherStore.getHigh(), mWeatherStore.getLow());
+            mIconAtlas.request(mWeatherStore.getWeatherId());
+            if (mWeatherStore.getForecast() != null) {
+                // Today may have moved on since the forecast was stored.
+                applyForecast(mWeatherStore.getForecast());
             }
+
+            // Stay connected while the watch face exists, rather than reconnecting on every
+            // wrist raise.
+            mConnection = new WearableConnection(MyWatchFace.this, this, mWeatherStore);
+            mConnection.connect();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mConnection.disconnect();
+            mRenderer.release();
+            mIconAtlas.release();
+            mWeatherStore.close();
             super.onDestroy();
         }
 
         @Override
         public void onPeekCardPositionUpdate(Rect rect) {
             super.onPeekCardPositionUpdate(rect);
-            mCardBounds.set(rect);
+            mRenderer.setCardBounds(rect);
+            if (mAmbient) {
+                // The card is only masked in ambient mode.
+                invalidate();
+            }
         }
 
         @Override
@@ -293,20 +220,14 @@ public class MyWatchFace extends CanvasWatchFaceService {
             super.onVisibilityChanged(visible);
 
             if (visible) {
-                mGoogleApiClient.connect();
+                mConnection.requestWeatherIfStale();
 
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mRenderer.setTimeZone(TimeZone.getDefault().getID());
             } else {
                 unregisterReceiver();
-
-                if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-                    Wearable.DataApi.removeListener(mGoogleApiClient, this);
-                    mGoogleApiClient.disconnect();
-                }
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -334,20 +255,22 @@ public class MyWatchFace extends CanvasWatchFaceService {
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
-            mWidth = width;
-
-            mCenterX = mWidth / 2f;
+            mRenderer.setSurfaceSize(width, height);
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mRenderer.setLowBitAmbient(mLowBitAmbient);
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            if (mForecastDayEnd > 0 && System.currentTimeMillis() >= mForecastDayEnd) {
+                reapplyForecast();
+            }
             invalidate();
         }
 
@@ -356,16 +279,7 @@ public class MyWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTextPaintDate.setAntiAlias(!inAmbientMode);
-                    mTextPaintClock.setAntiAlias(!inAmbientMode);
-                    mTextPaintTempHigh.setAntiAlias(!inAmbientMode);
-                    mTextPaintTempLow.setAntiAlias(!inAmbientMode);
-                }
-
-                setTextPaintColor(mTextPaintDate, R.color.digital_text_semi_white);
-                setTextPaintColor(mTextPaintTempLow, R.color.digital_text_semi_white);
-
+                mRenderer.setAmbient(inAmbientMode);
                 invalidate();
             }
 
@@ -376,43 +290,9 @@ public class MyWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
-
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
-            mTime.setToNow();
-
-            String text = String.format("%02d:%02d", mTime.hour, mTime.minute);
-            canvas.drawText(text, mCenterX, mYOffset, mTextPaintClock);
-
-            float yPos = mYOffset + 30;
-            text = mTime.format("%a, %b %d %Y").toUpperCase();
-            canvas.drawText(text, mCenterX, yPos, mTextPaintDate);
-
-            yPos = yPos + 30;
-            canvas.drawLine(mCenterX - 30, yPos, mCenterX + 30, yPos, mTextPaintDate);
-
-            yPos = yPos + 50;
-            if (mWeatherHigh != null && mWeatherLow != null) {
-                canvas.drawText(mWeatherHigh, mCenterX, yPos, mTextPaintTempHigh);
-                float highLength = mTextPaintTempHigh.measureText(mWeatherHigh);
-                canvas.drawText(mWeatherLow, mCenterX + highLength + 10, yPos, mTextPaintTempLow);
-
-                if (!mLowBitAmbient) {
-                    Bitmap bmpWeather = (!mAmbient) ? mWeatherIcon : mGrayWeatherIcon;
-                    if (bmpWeather != null)
-                        canvas.drawBitmap(bmpWeather, mCenterX - (highLength + bmpWeather.getHeight()),
-                                yPos - bmpWeather.getHeight() + 15, null);
-                }
-            }
-
-            if (mAmbient) {
-                canvas.drawRect(mCardBounds, mBlackPaint);
-            }
+            long start = System.nanoTime();
+            mRenderer.draw(canvas, bounds);
+            mFrameStats.record(System.nanoTime() - start);
         }
 
         /**
@@ -438,9 +318,12 @@ public class MyWatchFace extends CanvasWatchFaceService {
          * Handle updating the time periodically in interactive mode.
          */
         private void handleUpdateTimeMessage() {
+            long timeMs = System.currentTimeMillis();
+            if (mForecastDayEnd > 0 && timeMs >= mForecastDayEnd) {
+                reapplyForecast();
+            }
             invalidate();
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
                 long delayMs = INTERACTIVE_UPDATE_RATE_MS
                         - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
@@ -453,63 +336,99 @@ public class MyWatchFace extends CanvasWatchFaceService {
                 if (event.getType() == DataEvent.TYPE_CHANGED) {
                     // DataItem changed
                     DataItem item = event.getDataItem();
-                    if (item.getUri().getPath().compareTo(WEATHER_INFO_PATH) == 0) {
-
-                        SharedPreferences.Editor editor = mPref.edit();
+                    if (WearableContract.WEATHER_INFO_PATH.equals(item.getUri().getPath())) {
 
                         DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
-                        if (dataMap.containsKey(KEY_HIGH)) {
-                            mWeatherHigh = dataMap.getString(KEY_HIGH);
-                            editor.putString(KEY_HIGH, mWeatherHigh);
-                        }
-
-                        if (dataMap.containsKey(KEY_LOW)) {
-                            mWeatherLow = dataMap.getString(KEY_LOW);
-                            editor.putString(KEY_LOW, mWeatherLow);
+                        Asset asset = dataMap.getAsset(WearableContract.KEY_FORECAST);
+                        if (asset != null) {
+                            mConnection.loadAsset(asset, new WearableConnection.AssetCallback() {
+                                @Override
+                                public void onAssetLoaded(byte[] data) {
+                                    applyForecast(data);
+                                    // Written in the background.
+                                    mWeatherStore.commit();
+                                }
+                            });
                         }
-
-                        if (dataMap.containsKey(KEY_WEATHER_ID)) {
-                            int weatherId = dataMap.getInt(KEY_WEATHER_ID);
-                            editor.putInt(KEY_WEATHER_ID, weatherId);
-
-                            mWeatherIcon = getWeatherIconBitmap(weatherId);
-                        }
-
-                        editor.commit();
-
-                        invalidate();
                     }
                 } else if (event.getType() == DataEvent.TYPE_DELETED) {
                     // DataItem deleted
-                    mPref.edit().clear().commit();
+                    mWeatherStore.clear();
                 }
             }
         }
 
-        private Bitmap getWeatherIconBitmap(int weatherId) {
-            if (weatherId > 0) {
-                Drawable b = getResources().getDrawable(getArtResourceForWeatherCondition(weatherId));
-                Bitmap icon = ((BitmapDrawable) b).getBitmap();
-
-                Bitmap resBitmap = Bitmap.createScaledBitmap(icon, 60, 60, true);
-
-                //clone for Ambient mode
-                mGrayWeatherIcon = Bitmap.createBitmap(
-                        resBitmap.getWidth(),
-                        resBitmap.getHeight(), Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(mGrayWeatherIcon);
-                Paint grayPaint = new Paint();
-                ColorMatrix colorMatrix = new ColorMatrix();
-                colorMatrix.setSaturation(0);
-                ColorMatrixColorFilter filter = new
-                        ColorMatrixColorFilter(colorMatrix);
-                grayPaint.setColorFilter(filter);
-                canvas.drawBitmap(resBitmap, 0, 0, grayPaint);
-
-                return resBitmap;
-            } else {
-                return null;
+        /**
+         * Shows today's weather and the coming days from an encoded forecast, and keeps it in the
+         * weather store.  Only the days shown are read.
+         */
+        private void applyForecast(byte[] data) {
+            Forecast forecast;
+            try {
+                forecast = new Forecast(data);
+            } catch (IllegalArgumentException e) {
+                Log.e(LOG_TAG, "Ignoring unreadable forecast", e);
+                return;
+            }
+            int today = forecast.findDay(System.currentTimeMillis());
+            if (today < 0) {
+                // The forecast has run out; show no weather rather than an old day's as today's.
+                mForecastDayEnd = 0;
+                mWeatherStore.setForecast(data);
+                mWeatherStore.setHigh(null);
+                mWeatherStore.setLow(null);
+                mWeatherStore.setWeatherId(0);
+                mRenderer.setWeather(null, null);
+                mRenderer.setForecastStrip(null);
+                mIconAtlas.request(0);
+                invalidate();
+                return;
+            }
+            mForecastDayEnd = forecast.getDate(today) + TimeUnit.DAYS.toMillis(1);
+            TemperatureFormatter formatter = getTemperatureFormatter(forecast.isMetric());
+
+            mWeatherStore.setForecast(data);
+            mWeatherStore.setHigh(formatter.format(forecast.getHigh(today)));
+            mWeatherStore.setLow(formatter.format(forecast.getLow(today)));
+            mWeatherStore.setWeatherId(forecast.getWeatherId(today));
+
+            StringBuilder strip = new StringBuilder();
+            Time time = new Time();
+            int last = Math.min(forecast.size() - 1, today + FORECAST_STRIP_DAYS);
+            for (int day = today + 1; day <= last; day++) {
+                time.set(forecast.getDate(day));
+                if (strip.length() > 0) {
+                    strip.append("  ");
+                }
+                strip.append(time.format("%a").toUpperCase())
+                        .append(' ')
+                        .append(formatter.format(forecast.getHigh(day)));
+            }
+
+            mRenderer.setWeather(mWeatherStore.getHigh(), mWeatherStore.getLow());
+            mRenderer.setForecastStrip(strip.length() > 0 ? strip.toString() : null);
+            mIconAtlas.request(mWeatherStore.getWeatherId());
+            invalidate();
+        }
+
+        /**
+         * Shows the stored forecast again, so today moves on to the next day of it.
+         */
+        private void reapplyForecast() {
+            byte[] data = mWeatherStore.getForecast();
+            // Not committed: the weather is no fresher, and loading it applies it again anyway.
+            if (data != null) {
+                applyForecast(data);
+            }
+        }
+
+        private TemperatureFormatter getTemperatureFormatter(boolean metric) {
+            if (mTemperatureFormatter == null
+                    || !mTemperatureFormatter.matches(Locale.getDefault(), metric)) {
+                mTemperatureFormatter = new TemperatureFormatter(
+                        getString(R.string.format_temperature), Locale.getDefault(), metric);
             }
+            return mTemperatureFormatter;
         }
     }
 }
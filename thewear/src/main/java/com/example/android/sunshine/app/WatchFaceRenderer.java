@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.support.annotation.ColorRes;
+import android.support.annotation.DimenRes;
+import android.text.format.Time;
+
+/**
+ * Draws the Sunshine watch face.
+ * <p/>
+ * {@link #draw(Canvas, Rect)} runs on every minute tick, in interactive and ambient mode alike,
+ * and again whenever the mode, visibility or peek card changes, so it doesn't allocate: the clock
+ * digits are written into a reused char buffer, the date line is only formatted again when the day
+ * changes, and the temperature layout is measured when the weather changes.
+ * <p/>
+ * Everything but the clock only changes with the weather, the day or the ambient mode, so it is
+ * rendered once into an offscreen layer.  Each frame copies that layer and draws the time on top.
+ */
+class WatchFaceRenderer {
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+
+    private static final String DATE_FORMAT = "%a, %b %d %Y";
+
+    private final Resources mResources;
+    private final Paint mBackgroundPaint, mBlackPaint;
+    private final Paint mTextPaintClock, mTextPaintDate, mTextPaintTempHigh, mTextPaintTempLow;
+    private final Time mTime = new Time();
+
+    // "HH:MM", rewritten in place every frame.
+    private final char[] mClockChars = {'0', '0', ':', '0', '0'};
+
+    // The day mDateText was formatted for; -1 forces the next frame to format it again.
+    private int mDateYear = -1;
+    private int mDateYearDay = -1;
+    private String mDateText;
+
+    private String mWeatherHigh;
+    private String mWeatherLow;
+    private float mWeatherHighWidth;
+    private Bitmap mWeatherIcon;
+    private Bitmap mGrayWeatherIcon;
+    private String mForecastStrip;
+
+    private final Rect mCardBounds = new Rect();
+    private final float mYOffset;
+    private float mCenterX;
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+
+    // Offscreen copy of everything but the clock, see drawStaticContent().
+    private Bitmap mLayer;
+    private Canvas mLayerCanvas;
+    private boolean mLayerValid;
+    private boolean mLayerCacheEnabled = true;
+    private int mWidth;
+    private int mHeight;
+
+    WatchFaceRenderer(Resources resources) {
+        mResources = resources;
+        mYOffset = resources.getDimension(R.dimen.digital_y_offset);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(resources.getColor(R.color.background));
+        mBlackPaint = new Paint();
+        mBlackPaint.setColor(Color.BLACK);
+
+        mTextPaintClock = createTextPaint(R.color.digital_text_white, R.dimen.digital_text_size_clock);
+        mTextPaintDate = createTextPaint(R.color.digital_text_semi_white, R.dimen.digital_text_size_date);
+        mTextPaintTempHigh = createTextPaint(R.color.digital_text_white, R.dimen.digital_text_size_temp);
+        mTextPaintTempLow = createTextPaint(R.color.digital_text_semi_white, R.dimen.digital_text_size_temp);
+    }
+
+    private Paint createTextPaint(@ColorRes int textColor, @DimenRes int resTextSize) {
+        Paint paint = new Paint();
+        setTextPaintColor(paint, textColor);
+        paint.setAntiAlias(true);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setTextSize(mResources.getDimension(resTextSize));
+        return paint;
+    }
+
+    private void setTextPaintColor(Paint paint, @ColorRes int textColor) {
+        if (!mAmbient) {
+            paint.setColor(mResources.getColor(textColor));
+        } else {
+            paint.setColor(Color.WHITE);
+        }
+    }
+
+    void setSurfaceSize(int width, int height) {
+        mCenterX = width / 2f;
+        if (width != mWidth || height != mHeight) {
+            mWidth = width;
+            mHeight = height;
+            if (mLayer != null) {
+                mLayer.recycle();
+                mLayer = null;
+            }
+            mLayerValid = false;
+        }
+    }
+
+    void setCardBounds(Rect rect) {
+        mCardBounds.set(rect);
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+        mLayerValid = false;
+    }
+
+    /**
+     * Turns the offscreen layer off, so every frame draws everything.  Only used to compare the
+     * two in benchmarks.
+     */
+    void setLayerCacheEnabled(boolean enabled) {
+        mLayerCacheEnabled = enabled;
+        mLayerValid = false;
+    }
+
+    void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+        mLayerValid = false;
+        if (mLowBitAmbient) {
+            mTextPaintDate.setAntiAlias(!ambient);
+            mTextPaintClock.setAntiAlias(!ambient);
+            mTextPaintTempHigh.setAntiAlias(!ambient);
+            mTextPaintTempLow.setAntiAlias(!ambient);
+        }
+        setTextPaintColor(mTextPaintDate, R.color.digital_text_semi_white);
+        setTextPaintColor(mTextPaintTempLow, R.color.digital_text_semi_white);
+    }
+
+    /**
+     * Switches to the given time zone, e.g. after ACTION_TIMEZONE_CHANGED.
+     */
+    void setTimeZone(String timeZone) {
+        mTime.clear(timeZone);
+        mTime.setToNow();
+        mDateYearDay = -1;
+        mLayerValid = false;
+    }
+
+    void setWeather(String high, String low) {
+        mWeatherHigh = high;
+        mWeatherLow = low;
+        mWeatherHighWidth = high != null ? mTextPaintTempHigh.measureText(high) : 0;
+        mLayerValid = false;
+    }
+
+    /**
+     * @param strip the coming days' weather on one line, or null to show none
+     */
+    void setForecastStrip(String strip) {
+        mForecastStrip = strip;
+        mLayerValid = false;
+    }
+
+    void setWeatherIcons(Bitmap icon, Bitmap grayIcon) {
+        mWeatherIcon = icon;
+        mGrayWeatherIcon = grayIcon;
+        mLayerValid = false;
+    }
+
+    void draw(Canvas canvas, Rect bounds) {
+        mTime.setToNow();
+        if (mTime.yearDay != mDateYearDay || mTime.year != mDateYear) {
+            mDateText = mTime.format(DATE_FORMAT).toUpperCase();
+            mDateYearDay = mTime.yearDay;
+            mDateYear = mTime.year;
+            mLayerValid = false;
+        }
+
+        if (!mLayerCacheEnabled) {
+            drawStaticContent(canvas, bounds.width(), bounds.height());
+        } else {
+            if (mLayer == null) {
+                mWidth = bounds.width();
+                mHeight = bounds.height();
+                mLayer = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                mLayerCanvas = new Canvas(mLayer);
+                mLayerValid = false;
+            }
+            if (!mLayerValid) {
+                drawStaticContent(mLayerCanvas, mWidth, mHeight);
+                mLayerValid = true;
+            }
+            canvas.drawBitmap(mLayer, 0, 0, null);
+        }
+
+        // Draw HH:MM.
+        mClockChars[0] = (char) ('0' + mTime.hour / 10);
+        mClockChars[1] = (char) ('0' + mTime.hour % 10);
+        mClockChars[3] = (char) ('0' + mTime.minute / 10);
+        mClockChars[4] = (char) ('0' + mTime.minute % 10);
+        canvas.drawText(mClockChars, 0, mClockChars.length, mCenterX, mYOffset, mTextPaintClock);
+
+        if (mAmbient) {
+            canvas.drawRect(mCardBounds, mBlackPaint);
+        }
+    }
+
+    /**
+     * Draws everything that doesn't change within a day, weather update or mode.
+     */
+    private void drawStaticContent(Canvas canvas, int width, int height) {
+        // Draw the background.
+        if (mAmbient) {
+            canvas.drawColor(Color.BLACK);
+        } else {
+            canvas.drawRect(0, 0, width, height, mBackgroundPaint);
+        }
+
+        float yPos = mYOffset + 30;
+        canvas.drawText(mDateText, mCenterX, yPos, mTextPaintDate);
+
+        yPos = yPos + 30;
+        canvas.drawLine(mCenterX - 30, yPos, mCenterX + 30, yPos, mTextPaintDate);
+
+        yPos = yPos + 50;
+        if (mWeatherHigh != null && mWeatherLow != null) {
+            canvas.drawText(mWeatherHigh, mCenterX, yPos, mTextPaintTempHigh);
+            canvas.drawText(mWeatherLow, mCenterX + mWeatherHighWidth + 10, yPos, mTextPaintTempLow);
+
+            if (!mLowBitAmbient) {
+                Bitmap bmpWeather = (!mAmbient) ? mWeatherIcon : mGrayWeatherIcon;
+                if (bmpWeather != null)
+                    canvas.drawBitmap(bmpWeather, mCenterX - (mWeatherHighWidth + bmpWeather.getHeight()),
+                            yPos - bmpWeather.getHeight() + 15, null);
+            }
+        }
+
+        if (mForecastStrip != null) {
+            canvas.drawText(mForecastStrip, mCenterX, yPos + 40, mTextPaintDate);
+        }
+    }
+
+    /**
+     * Frees the offscreen layer.
+     */
+    void release() {
+        if (mLayer != null) {
+            mLayer.recycle();
+            mLayer = null;
+        }
+        mLayerValid = false;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WearableContract;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.Asset;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the watch face connected to the Wearable data layer for as long as the watch face lives,
+ * with its data listener registered once.
+ * <p/>
+ * Every weather request makes the phone sync over the network, so requests are only sent when the
+ * stored weather is older than {@link #MAX_WEATHER_AGE_MS}, no more often than
+ * {@link #MIN_REQUEST_INTERVAL_MS}, and at most {@link #MAX_REQUESTS_PER_HOUR} times an hour.
+ */
+class WearableConnection implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener, MessageApi.MessageListener {
+    private static final String LOG_TAG = WearableConnection.class.getSimpleName();
+
+    // The phone syncs every few hours on its own; only ask when the watch has fallen behind that.
+    static final long MAX_WEATHER_AGE_MS = 3 * DateUtils.HOUR_IN_MILLIS;
+    static final long MIN_REQUEST_INTERVAL_MS = 15 * DateUtils.MINUTE_IN_MILLIS;
+    static final int MAX_REQUESTS_PER_HOUR = 2;
+
+    /**
+     * Receives the contents of an asset on the main thread.
+     */
+    interface AssetCallback {
+        void onAssetLoaded(byte[] data);
+    }
+
+    private final GoogleApiClient mGoogleApiClient;
+    private final ExecutorService mAssetExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final DataApi.DataListener mListener;
+    private final WeatherStore mWeatherStore;
+
+    // When the requests of the last hour were sent, oldest first; a ring of MAX_REQUESTS_PER_HOUR.
+    private final long[] mRequestTimes = new long[MAX_REQUESTS_PER_HOUR];
+    private int mNextRequestSlot;
+    private long mLastRequestTime;
+    private int mSkippedRequests;
+
+    WearableConnection(Context context, DataApi.DataListener listener, WeatherStore weatherStore) {
+        mListener = listener;
+        mWeatherStore = weatherStore;
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    void connect() {
+        mGoogleApiClient.connect();
+    }
+
+    void disconnect() {
+        if (mGoogleApiClient.isConnected()) {
+            Wearable.DataApi.removeListener(mGoogleApiClient, mListener);
+            Wearable.MessageApi.removeListener(mGoogleApiClient, this);
+        }
+        mGoogleApiClient.disconnect();
+        mAssetExecutor.shutdownNow();
+    }
+
+    /**
+     * Reads an asset on a background thread.  Nothing is delivered if it can't be read.
+     */
+    void loadAsset(final Asset asset, final AssetCallback callback) {
+        mAssetExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                InputStream in = Wearable.DataApi.getFdForAsset(mGoogleApiClient, asset)
+                        .await().getInputStream();
+                if (in == null) {
+                    Log.d(LOG_TAG, "Asset not available: " + asset);
+                    return;
+                }
+                final byte[] data;
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[512];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    data = out.toByteArray();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error reading asset", e);
+                    return;
+                } finally {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // Nothing left to do.
+                    }
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onAssetLoaded(data);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onConnected(Bundle bundle) {
+        Log.d(LOG_TAG, "onConnected: " + bundle);
+        Wearable.DataApi.addListener(mGoogleApiClient, mListener);
+        Wearable.MessageApi.addListener(mGoogleApiClient, this);
+        requestWeatherIfStale();
+    }
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (WearableContract.WEATHER_FRESH_PATH.equals(messageEvent.getPath())
+                && messageEvent.getData() != null && messageEvent.getData().length == 8) {
+            long confirmedAt = ByteBuffer.wrap(messageEvent.getData()).getLong();
+            Log.d(LOG_TAG, "Phone confirmed the weather is current");
+            mWeatherStore.markFresh(confirmedAt);
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        // The client reconnects by itself and calls onConnected again.
+        Log.d(LOG_TAG, "onConnectionSuspended: " + cause);
+    }
+
+    @Override
+    public void onConnectionFailed(ConnectionResult connectionResult) {
+        Log.d(LOG_TAG, "onConnectionFailed: " + connectionResult);
+    }
+
+    /**
+     * Asks the phone for new weather if the stored weather is stale and the rate limits allow it.
+     * Cheap enough to call whenever the watch face becomes visible.
+     */
+    void requestWeatherIfStale() {
+        if (!mGoogleApiClient.isConnected()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - mWeatherStore.getUpdatedAt() < MAX_WEATHER_AGE_MS) {
+            return;
+        }
+        if (now - mLastRequestTime < MIN_REQUEST_INTERVAL_MS
+                || now - mRequestTimes[mNextRequestSlot] < DateUtils.HOUR_IN_MILLIS) {
+            mSkippedRequests++;
+            Log.d(LOG_TAG, "Weather is stale, but rate limited; " + mSkippedRequests
+                    + " requests skipped so far");
+            return;
+        }
+        mLastRequestTime = now;
+        mRequestTimes[mNextRequestSlot] = now;
+        mNextRequestSlot = (mNextRequestSlot + 1) % MAX_REQUESTS_PER_HOUR;
+        Log.d(LOG_TAG, "Requesting weather, " + getRequestsInLastHour(now)
+                + " requests in the last hour");
+        requestWeatherInfo();
+    }
+
+    private int getRequestsInLastHour(long now) {
+        int count = 0;
+        for (long time : mRequestTimes) {
+            if (time > 0 && now - time < DateUtils.HOUR_IN_MILLIS) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void requestWeatherInfo() {
+        PutDataMapRequest putDataMapRequest =
+                PutDataMapRequest.create(WearableContract.WEATHER_REQ_PATH);
+        putDataMapRequest.getDataMap().putString(WearableContract.KEY_ID,
+                UUID.randomUUID().toString());
+        PutDataRequest request = putDataMapRequest.asPutDataRequest();
+
+        Wearable.DataApi.putDataItem(mGoogleApiClient, request)
+                .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+                    @Override
+                    public void onResult(DataApi.DataItemResult dataItemResult) {
+                        if (!dataItemResult.getStatus().isSuccess()) {
+                            Log.d(LOG_TAG, "Failed request weather data from companion device");
+                        } else {
+                            Log.d(LOG_TAG, "Successfully request for weather data");
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.preference.PreferenceManager;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The weather shown on the watch face, persisted in a small binary file.
+ * <p/>
+ * Reads happen once, when the watch face starts.  Changes are kept in memory and written on a
+ * background thread; changes made in quick succession are batched into one write, so the engine
+ * thread never waits for the disk.
+ */
+class WeatherStore {
+    private static final String LOG_TAG = WeatherStore.class.getSimpleName();
+
+    private static final String FILE_NAME = "weather.bin";
+    // Version 2 added the encoded forecast.
+    private static final int FORMAT_VERSION = 2;
+
+    // Changes made within this window are written together.
+    private static final long WRITE_DELAY_MS = 500;
+
+    // Keys used by earlier versions, which kept the weather in the default SharedPreferences.
+    private static final String LEGACY_KEY_HIGH = "high";
+    private static final String LEGACY_KEY_LOW = "low";
+    private static final String LEGACY_KEY_WEATHER_ID = "weatherId";
+
+    private final Context mContext;
+    private final AtomicFile mFile;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    private String mHigh;
+    private String mLow;
+    private int mWeatherId;
+    private long mUpdatedAt;
+    private byte[] mForecast;
+    private boolean mWritePending;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WeatherStore.this) {
+                mWritePending = false;
+            }
+            write();
+        }
+    };
+
+    WeatherStore(Context context) {
+        mContext = context.getApplicationContext();
+        mFile = new AtomicFile(new File(mContext.getFilesDir(), FILE_NAME));
+        mThread = new HandlerThread(LOG_TAG);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Reads the stored weather.  The file is a few dozen bytes, so this is cheap enough to call
+     * from onCreate.
+     */
+    void load() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(mFile.openRead());
+            int version = in.readInt();
+            if (version < 1 || version > FORMAT_VERSION) {
+                return;
+            }
+            synchronized (this) {
+                mHigh = in.readBoolean() ? in.readUTF() : null;
+                mLow = in.readBoolean() ? in.readUTF() : null;
+                mWeatherId = in.readInt();
+                mUpdatedAt = in.readLong();
+                if (version >= 2) {
+                    int length = in.readInt();
+                    if (length > 0) {
+                        mForecast = new byte[length];
+                        in.readFully(mForecast);
+                    }
+                }
+            }
+        } catch (FileNotFoundException e) {
+            migrateFromPreferences();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading stored weather", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Nothing left to do.
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks up weather stored by earlier versions, once.
+     */
+    private void migrateFromPreferences() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        if (!prefs.contains(LEGACY_KEY_WEATHER_ID)) {
+            return;
+        }
+        synchronized (this) {
+            mHigh = prefs.getString(LEGACY_KEY_HIGH, null);
+            mLow = prefs.getString(LEGACY_KEY_LOW, null);
+            mWeatherId = prefs.getInt(LEGACY_KEY_WEATHER_ID, 0);
+        }
+        prefs.edit().remove(LEGACY_KEY_HIGH).remove(LEGACY_KEY_LOW)
+                .remove(LEGACY_KEY_WEATHER_ID).apply();
+        scheduleWrite();
+    }
+
+    synchronized String getHigh() {
+        return mHigh;
+    }
+
+    synchronized String getLow() {
+        return mLow;
+    }
+
+    /**
+     * @return the stored weather condition id, or 0 if there is none
+     */
+    synchronized int getWeatherId() {
+        return mWeatherId;
+    }
+
+    /**
+     * @return when the weather was last updated, in milliseconds since the epoch, or 0 if unknown
+     */
+    synchronized long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    /**
+     * @return the forecast encoded by ForecastCodec, or null if there is none
+     */
+    synchronized byte[] getForecast() {
+        return mForecast;
+    }
+
+    synchronized void setForecast(byte[] forecast) {
+        mForecast = forecast;
+    }
+
+    synchronized void setHigh(String high) {
+        mHigh = high;
+    }
+
+    synchronized void setLow(String low) {
+        mLow = low;
+    }
+
+    synchronized void setWeatherId(int weatherId) {
+        mWeatherId = weatherId;
+    }
+
+    /**
+     * Marks the weather as updated now and schedules a write of all changes.
+     */
+    void commit() {
+        synchronized (this) {
+            mUpdatedAt = System.currentTimeMillis();
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Records that the phone confirmed the stored weather is still current at the given time,
+     * without sending it again.
+     */
+    void markFresh(long confirmedAt) {
+        synchronized (this) {
+            if (mWeatherId == 0 || confirmedAt <= mUpdatedAt) {
+                return;
+            }
+            mUpdatedAt = confirmedAt;
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Forgets the stored weather.
+     */
+    void clear() {
+        synchronized (this) {
+            mHigh = null;
+            mLow = null;
+            mWeatherId = 0;
+            mUpdatedAt = 0;
+            mForecast = null;
+        }
+        scheduleWrite();
+    }
+
+    private synchronized void scheduleWrite() {
+        if (!mWritePending) {
+            mWritePending = true;
+            mHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Writes pending changes right away and stops the background thread.
+     */
+    void close() {
+        synchronized (this) {
+            if (mWritePending) {
+                mHandler.removeCallbacks(mWriteRunnable);
+                mHandler.post(mWriteRunnable);
+            }
+        }
+        mThread.quitSafely();
+    }
+
+    private void write() {
+        String high, low;
+        int weatherId;
+        long updatedAt;
+        byte[] forecast;
+        synchronized (this) {
+            high = mHigh;
+            low = mLow;
+            weatherId = mWeatherId;
+            updatedAt = mUpdatedAt;
+            forecast = mForecast;
+        }
+
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(high != null);
+            if (high != null) {
+                out.writeUTF(high);
+            }
+            out.writeBoolean(low != null);
+            if (low != null) {
+                out.writeUTF(low);
+            }
+            out.writeInt(weatherId);
+            out.writeLong(updatedAt);
+            out.writeInt(forecast != null ? forecast.length : 0);
+            if (forecast != null) {
+                out.write(forecast);
+            }
+            out.flush();
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing weather", e);
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+    }
+}